@@ -30,14 +30,17 @@ namespace SalesSystem.Services
         public int categoryId { get; set; }
     }
 
-    // productUpdate wrapper (global or single)
+    // productUpdate wrapper (global, single or batch)
     public class ProductUpdateMessage
     {
         public string type { get; set; } = string.Empty; // "productUpdate"
         public long timestamp { get; set; }
-        public string? updateType { get; set; } // "global" or "single"
+        public string? updateType { get; set; } // "global", "single" or "batch"
         public List<ProductInfo>? products { get; set; } // for global updates
         public ProductInfo? updatedProduct { get; set; } // for single updates
+        public List<ProductInfo>? updatedProducts { get; set; } // for batch updates
+        public List<int>? deletedProductIds { get; set; } // for batch updates
+        public int? productId { get; set; } // for productDeleted
     }
 
     public class ProductStatus
@@ -164,6 +167,13 @@ namespace SalesSystem.Services
 
                             string message = Encoding.UTF8.GetString(buffer, 0, result.Count);
 
+                            if (IsResync(message))
+                            {
+                                // Inventory dropped updates we were too slow to take; ask for the whole catalog again
+                                await RequestSnapshotAsync();
+                                continue;
+                            }
+
                             _lastInventoryMessage = message;
 
                             if(_initialInventoryMessage == null)
@@ -198,6 +208,33 @@ namespace SalesSystem.Services
             }
         }
 
+        private static bool IsResync(string message)
+        {
+            try
+            {
+                return JsonSerializer.Deserialize<ProductUpdateMessage>(message)?.type == "resync";
+            }
+            catch (JsonException)
+            {
+                return false;
+            }
+        }
+
+        // Subscribing again without a sinceSeq gets a fresh global productUpdate
+        private async Task RequestSnapshotAsync()
+        {
+            try
+            {
+                string jsonMessage = JsonSerializer.Serialize(new { action = "subscribe" });
+                byte[] messageBytes = Encoding.UTF8.GetBytes(jsonMessage);
+                await _webSocket.SendAsync(new ArraySegment<byte>(messageBytes), WebSocketMessageType.Text, true, CancellationToken.None);
+            }
+            catch (Exception ex)
+            {
+                Console.WriteLine($"Error requesting inventory snapshot: {ex.Message}");
+            }
+        }
+
         // Parse and process inventory messages
         private void ProcessInventoryMessage(string message)
         {
@@ -205,6 +242,11 @@ namespace SalesSystem.Services
             {
                 // First, try productUpdate (global or single)
                 var productUpdate = JsonSerializer.Deserialize<ProductUpdateMessage>(message);
+                if (productUpdate != null && productUpdate.type == "productDeleted" && productUpdate.productId != null)
+                {
+                    _productStatuses.TryRemove(productUpdate.productId.Value, out _);
+                    return;
+                }
                 if (productUpdate != null && productUpdate.type == "productUpdate")
                 {
                     if (productUpdate.updateType == "global" && productUpdate.products != null)
@@ -262,6 +304,28 @@ namespace SalesSystem.Services
                         );
                         return;
                     }
+
+                    if (productUpdate.updateType == "batch")
+                    {
+                        foreach (var p in productUpdate.updatedProducts ?? new List<ProductInfo>())
+                        {
+                            var status = new ProductStatus
+                            {
+                                ProductId = p.productId,
+                                Name = p.productName,
+                                StockQuantity = p.quantity,
+                                Price = p.price,
+                                IsAvailable = p.quantity > 0,
+                                LastUpdated = DateTime.UtcNow
+                            };
+                            _productStatuses.AddOrUpdate(p.productId, status, (_, __) => status);
+                        }
+                        foreach (var deletedId in productUpdate.deletedProductIds ?? new List<int>())
+                        {
+                            _productStatuses.TryRemove(deletedId, out _);
+                        }
+                        return;
+                    }
                 }
 
                 // Fallback: single-product message
@@ -0,0 +1,76 @@
+package com.vaderpos.inventory.api.search;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+
+// Name search against the in-memory index: a two letter prefix, which has the most candidates,
+// two whole words, and a misspelling that only matches on part of its trigrams. Names are two
+// made-up words from a few thousand, so prefixes match about as widely as in a real catalog.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+        "ba", "ko", "ri", "san", "tel", "mo", "chi", "pe", "lu", "dor",
+        "an", "ve", "gra", "no", "fi", "sto", "mar", "el", "qui", "zu"
+    };
+
+    @Param({"1000", "50000"})
+    private int size;
+
+    private ProductSearchIndex index;
+    private String name;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new ProductSearchIndex(null);
+        for (int i = 0; i < size; i++) {
+            index.put(new ProductDTO((long) i, word(random) + " " + word(random), i % 500, 1.0, i % 20));
+        }
+        name = word(random) + " " + word(random);
+        index.put(new ProductDTO((long) size, name, 1, 1.0, 3));
+    }
+
+    @Benchmark
+    public List<ProductDTO> prefix() {
+        return index.search(name.substring(0, 2), null, 20);
+    }
+
+    @Benchmark
+    public List<ProductDTO> words() {
+        return index.search(name, null, 20);
+    }
+
+    @Benchmark
+    public List<ProductDTO> typo() {
+        return index.search(name.substring(1).replace(' ', 'x'), 3, 20);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.vaderpos.inventory.api.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.model.Product;
+
+// Entity to DTO mapping as getAllProducts does it on a cache miss, against a plain loop
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductMappingBenchmark {
+
+    @Param({"1000", "50000"})
+    private int size;
+
+    private List<Product> products;
+
+    @Setup
+    public void setUp() {
+        products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Product product = new Product();
+            product.setProductId((long) i);
+            product.setProductName("Product " + i);
+            product.setQuantity(i % 500);
+            product.setPrice(BigDecimal.valueOf(1000 + i % 9000, 2));
+            product.setCategoryId(i % 20);
+            products.add(product);
+        }
+    }
+
+    @Benchmark
+    public List<ProductDTO> stream() {
+        return products.stream()
+            .map(ProductServiceImpl::convertToDTO)
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<ProductDTO> presizedLoop() {
+        List<ProductDTO> dtos = new ArrayList<>(products.size());
+        for (Product product : products) {
+            dtos.add(ProductServiceImpl.convertToDTO(product));
+        }
+        return dtos;
+    }
+}
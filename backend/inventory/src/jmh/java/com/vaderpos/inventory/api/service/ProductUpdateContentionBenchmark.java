@@ -0,0 +1,109 @@
+package com.vaderpos.inventory.api.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vaderpos.inventory.InventoryApplication;
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.model.Product;
+import com.vaderpos.inventory.api.repository.ICategoryRepository;
+import com.vaderpos.inventory.api.repository.IProductRepository;
+
+import jakarta.persistence.EntityManager;
+
+// 8 threads read-modify-writing the same product row, once retrying on @Version conflicts and
+// once locking the row with SELECT ... FOR UPDATE; the two strategies updateProduct combines.
+// The optimistic side also reports how many retries it needed.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ProductUpdateContentionBenchmark {
+
+    private static final int CATEGORY_ID = 4502;
+
+    @State(Scope.Benchmark)
+    public static class Inventory {
+        ConfigurableApplicationContext context;
+        TransactionTemplate transactionTemplate;
+        EntityManager entityManager;
+        IProductRepository productRepository;
+        Long productId;
+
+        @Setup(Level.Trial)
+        public void start() {
+            // EmbeddedPostgresConfig comes from the test classes and is found by component scanning
+            context = new SpringApplicationBuilder(InventoryApplication.class)
+                .properties("server.port=0", "inventory.outbox.poll-interval-ms=3600000")
+                .run();
+            transactionTemplate = context.getBean(TransactionTemplate.class);
+            entityManager = context.getBean(EntityManager.class);
+            productRepository = context.getBean(IProductRepository.class);
+            if (!context.getBean(ICategoryRepository.class).existsById(CATEGORY_ID)) {
+                context.getBean(ICategoryService.class).createCategory(new CategoryDTO(CATEGORY_ID, "Benchmark"));
+            }
+            productId = context.getBean(IProductService.class)
+                .createProduct(new ProductDTO(null, "Contended", 0, 1.0, CATEGORY_ID)).productId();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retries {
+        public long retries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retries = 0;
+        }
+    }
+
+    @Benchmark
+    public void optimisticRetries(Inventory inventory, Retries counter) {
+        while (true) {
+            try {
+                inventory.transactionTemplate.executeWithoutResult(status -> {
+                    Product row = inventory.entityManager.find(Product.class, inventory.productId);
+                    row.setQuantity(row.getQuantity() + 1);
+                });
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                counter.retries++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void selectForUpdate(Inventory inventory) {
+        inventory.transactionTemplate.executeWithoutResult(status -> {
+            Product row = inventory.productRepository.findByIdForUpdate(inventory.productId).orElseThrow();
+            row.setQuantity(row.getQuantity() + 1);
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package com.vaderpos.inventory.api.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.vaderpos.inventory.InventoryApplication;
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.repository.ICategoryRepository;
+
+// reduceProductStock from 8 threads against the embedded Postgres, all on one product (every
+// update queues on the same row lock) and on a product per thread (no row contention)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class StockMutationBenchmark {
+
+    private static final int CATEGORY_ID = 4501;
+    // Enough that no run ever sells out
+    private static final int STOCK = 1_000_000_000;
+
+    @State(Scope.Benchmark)
+    public static class Inventory {
+        ConfigurableApplicationContext context;
+        IProductService productService;
+        Long hotProductId;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void start() {
+            // EmbeddedPostgresConfig comes from the test classes and is found by component scanning
+            context = new SpringApplicationBuilder(InventoryApplication.class)
+                .properties("server.port=0", "inventory.outbox.poll-interval-ms=3600000")
+                .run();
+            productService = context.getBean(IProductService.class);
+            if (!context.getBean(ICategoryRepository.class).existsById(CATEGORY_ID)) {
+                context.getBean(ICategoryService.class).createCategory(new CategoryDTO(CATEGORY_ID, "Benchmark"));
+            }
+            hotProductId = createProduct("Hot");
+        }
+
+        Long createProduct(String name) {
+            return productService.createProduct(new ProductDTO(null, name, STOCK, 1.0, CATEGORY_ID)).productId();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OwnProduct {
+        Long productId;
+
+        @Setup(Level.Trial)
+        public void create(Inventory inventory) {
+            productId = inventory.createProduct("Thread " + inventory.threads.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public int sameProduct(Inventory inventory) {
+        return inventory.productService.reduceProductStock(inventory.hotProductId, 1);
+    }
+
+    @Benchmark
+    public int productPerThread(Inventory inventory, OwnProduct own) {
+        return inventory.productService.reduceProductStock(own.productId, 1);
+    }
+}
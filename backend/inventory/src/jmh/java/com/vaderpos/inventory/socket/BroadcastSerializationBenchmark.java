@@ -0,0 +1,85 @@
+package com.vaderpos.inventory.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+
+// Serializing a product list for a broadcast: org.json as the handler does it, Jackson,
+// the columnar wire format, and joining rows that were each encoded ahead of time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastSerializationBenchmark {
+
+    @Param({"100", "2000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<ProductDTO> products;
+    private Map<Long, byte[]> encodedRows;
+
+    @Setup
+    public void setUp() throws Exception {
+        products = new ArrayList<>(size);
+        encodedRows = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ProductDTO product = new ProductDTO((long) i, "Product " + i, i % 500, 10 + i % 90, i % 20, (long) i % 7);
+            products.add(product);
+            encodedRows.put(product.productId(), objectMapper.writeValueAsBytes(product));
+        }
+    }
+
+    @Benchmark
+    public byte[] orgJson() {
+        return SocketConnectionHandler.getProductObjects(products).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jackson() throws Exception {
+        return objectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] columnar() {
+        JSONObject change = new JSONObject();
+        change.put("products", SocketConnectionHandler.getProductObjects(products));
+        return WireFormat.COLUMNAR.encode(change).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] preEncodedRows() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 100);
+        out.write('[');
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(encodedRows.get(products.get(i).productId()));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package com.vaderpos.inventory.loadtest;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Recorder;
+
+// Times how long a committed change takes to reach the tills. Only the probe till touches the
+// probe product, one unit at a time, so its stock after each take identifies that take. Times
+// are taken from the moment the probe got its reply, by which point the change has committed;
+// a broadcast that overtakes the reply is not counted.
+class BroadcastProbe {
+
+    private static final class Take {
+        final long committedAt;
+        final AtomicInteger delivered = new AtomicInteger();
+        final AtomicLong slowest = new AtomicLong();
+
+        Take(long committedAt) {
+            this.committedAt = committedAt;
+        }
+    }
+
+    private final long productId;
+    private final int tills;
+    // By the stock left after the take
+    private final ConcurrentSkipListMap<Integer, Take> takes = new ConcurrentSkipListMap<>();
+    // Every till's delay, and per take the delay until the last till had it
+    final Recorder eachTill = new Recorder(3);
+    final Recorder allTills = new Recorder(3);
+
+    BroadcastProbe(long productId, int tills) {
+        this.productId = productId;
+        this.tills = tills;
+    }
+
+    long productId() {
+        return productId;
+    }
+
+    void committed(int remainingStock, long nanos) {
+        takes.put(remainingStock, new Take(nanos));
+    }
+
+    // A till saw the probe product at quantity after having seen it at previousQuantity; every
+    // take in between has now reached it
+    void seen(int quantity, int previousQuantity, long nanos) {
+        for (Take take : takes.subMap(quantity, true, previousQuantity, false).values()) {
+            long delayMicros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos - take.committedAt, 0));
+            eachTill.recordValue(delayMicros);
+            take.slowest.accumulateAndGet(delayMicros, Math::max);
+            if (take.delivered.incrementAndGet() == tills) {
+                allTills.recordValue(take.slowest.get());
+            }
+        }
+    }
+}
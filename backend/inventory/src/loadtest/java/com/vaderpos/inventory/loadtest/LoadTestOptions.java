@@ -0,0 +1,77 @@
+package com.vaderpos.inventory.loadtest;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Command line of SocketLoadTest; every option is --name=value
+record LoadTestOptions(
+    // Socket to test; ignored with embedded, which starts the app on a free port
+    URI url,
+    boolean embedded,
+    // Simulated tills, each on its own connection
+    int tills,
+    // Requests per second across all tills
+    int rate,
+    int warmupSeconds,
+    int durationSeconds,
+    // Relative weight of each action
+    Map<String, Integer> mix,
+    // Products the tills work on; with embedded this many are created
+    int products,
+    // How often the probe till takes one unit of the probe product to time broadcasts
+    int probeIntervalMs,
+    Long probeProductId,
+    String format,
+    String report) {
+
+    private static final Set<String> KNOWN = Set.of(
+        "url", "embedded", "tills", "rate", "warmup", "duration", "mix", "products",
+        "probe-interval-ms", "probe-product", "format", "report");
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options look like --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+            URI.create(values.getOrDefault("url", "ws://localhost:8080/inventory-socket")),
+            Boolean.parseBoolean(values.getOrDefault("embedded", "false")),
+            Integer.parseInt(values.getOrDefault("tills", "50")),
+            Integer.parseInt(values.getOrDefault("rate", "200")),
+            Integer.parseInt(values.getOrDefault("warmup", "10")),
+            Integer.parseInt(values.getOrDefault("duration", "60")),
+            parseMix(values.getOrDefault("mix", "getProduct=70,takeProduct=20,returnProduct=10")),
+            Integer.parseInt(values.getOrDefault("products", "500")),
+            Integer.parseInt(values.getOrDefault("probe-interval-ms", "500")),
+            values.containsKey("probe-product") ? Long.valueOf(values.get("probe-product")) : null,
+            values.getOrDefault("format", "json"),
+            values.getOrDefault("report", "target/loadtest-report.json"));
+        if (options.tills <= 0 || options.rate <= 0 || options.durationSeconds <= 0 || options.products <= 0) {
+            throw new IllegalArgumentException("tills, rate, duration and products must be greater than zero");
+        }
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        return options;
+    }
+
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] entry = part.split("=");
+            String action = entry[0].trim();
+            if (!action.equals("getProduct") && !action.equals("takeProduct") && !action.equals("returnProduct")) {
+                throw new IllegalArgumentException("The mix can only contain getProduct, takeProduct and returnProduct");
+            }
+            mix.put(action, Integer.parseInt(entry[1].trim()));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,255 @@
+package com.vaderpos.inventory.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.vaderpos.inventory.InventoryApplication;
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.ICategoryService;
+import com.vaderpos.inventory.api.service.IProductService;
+
+// Drives /inventory-socket like a shop at peak hour: a number of tills sending a mix of
+// getProduct/takeProduct/returnProduct at a fixed overall rate, plus a probe till timing how
+// long committed changes take to reach every till. Prints a summary and writes it as JSON so
+// runs against different versions can be compared. See the Load testing section of the README.
+public final class SocketLoadTest {
+
+    private static final int CATEGORY_ID = 4601;
+    private static final int STOCK = 1_000_000_000;
+
+    private SocketLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext context = null;
+        URI url = options.url();
+        List<Long> productIds;
+        long probeProductId;
+        if (options.embedded()) {
+            // EmbeddedPostgresConfig comes from the test classes and is found by component scanning
+            context = new SpringApplicationBuilder(InventoryApplication.class)
+                .properties("server.port=0")
+                .run();
+            url = URI.create("ws://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/inventory-socket");
+            productIds = seed(context, options.products() + 1);
+            probeProductId = productIds.remove(productIds.size() - 1);
+        } else {
+            productIds = fetchProductIds(url, options.products());
+            probeProductId = options.probeProductId() != null ? options.probeProductId() : productIds.remove(productIds.size() - 1);
+            productIds.remove(probeProductId);
+        }
+        if (productIds.isEmpty()) {
+            throw new IllegalStateException("No products to work on");
+        }
+
+        try {
+            run(options, url, productIds, probeProductId);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(LoadTestOptions options, URI url, List<Long> productIds, long probeProductId) throws Exception {
+        Map<String, Till.Stats> stats = new LinkedHashMap<>();
+        options.mix().keySet().forEach(action -> stats.put(action, new Till.Stats(new Recorder(3), new AtomicLong())));
+        BroadcastProbe probe = new BroadcastProbe(probeProductId, options.tills());
+        String subprotocol = options.format().equals("columnar") ? "inventory.columnar" : null;
+
+        HttpClient client = HttpClient.newHttpClient();
+        List<Till> tills = new ArrayList<>();
+        List<CompletableFuture<Void>> connected = new ArrayList<>();
+        for (int i = 0; i < options.tills(); i++) {
+            Till till = new Till(probe, stats, false);
+            tills.add(till);
+            connected.add(till.connect(client, url, subprotocol));
+        }
+        Till probeTill = new Till(probe, stats, true);
+        connected.add(probeTill.connect(client, url, subprotocol));
+        CompletableFuture.allOf(connected.toArray(CompletableFuture[]::new)).get(2, TimeUnit.MINUTES);
+        System.out.printf("%d tills connected to %s, %d products, %d requests/s%n",
+            options.tills(), url, productIds.size(), options.rate());
+
+        String[] actions = weightedActions(options.mix());
+        ExecutorService senders = Executors.newFixedThreadPool(Math.min(options.tills(), 64));
+        Thread probeThread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                probeTill.send("probe", probeProductId, System.nanoTime());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(options.probeIntervalMs()));
+            }
+        }, "probe");
+        probeThread.setDaemon(true);
+        probeThread.start();
+
+        // Open loop: request k is due at start + k * interval whether or not earlier ones were answered
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        boolean measuring = options.warmupSeconds() == 0;
+        long sent = 0;
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!measuring && due >= measureFrom) {
+                // Throw away what the warmup recorded
+                stats.values().forEach(s -> {
+                    s.latency().getIntervalHistogram();
+                    s.errors().set(0);
+                });
+                probe.eachTill.getIntervalHistogram();
+                probe.allTills.getIntervalHistogram();
+                measuring = true;
+                sent = 0;
+            }
+            Till till = tills.get((int) (sent++ % tills.size()));
+            String action = actions[ThreadLocalRandom.current().nextInt(actions.length)];
+            long productId = productIds.get(ThreadLocalRandom.current().nextInt(productIds.size()));
+            long intendedAt = due;
+            senders.execute(() -> till.send(action, productId, intendedAt));
+        }
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.MINUTES);
+        // Let the last replies and broadcasts arrive
+        Thread.sleep(2000);
+        probeThread.interrupt();
+
+        JSONObject report = report(options, stats, probe, sent);
+        Path reportPath = Path.of(options.report());
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        Files.writeString(reportPath, report.toString(2));
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+
+        tills.forEach(Till::close);
+        probeTill.close();
+    }
+
+    private static JSONObject report(LoadTestOptions options, Map<String, Till.Stats> stats, BroadcastProbe probe, long sent) {
+        JSONObject report = new JSONObject();
+        report.put("tills", options.tills());
+        report.put("targetRate", options.rate());
+        report.put("durationSeconds", options.durationSeconds());
+        report.put("format", options.format());
+        report.put("requestsSent", sent);
+
+        System.out.printf("%n%-22s %9s %7s %9s %9s %9s %9s %9s%n",
+            "latency (ms)", "count", "errors", "p50", "p90", "p99", "p99.9", "max");
+        JSONObject actions = new JSONObject();
+        long answered = 0;
+        for (Map.Entry<String, Till.Stats> entry : stats.entrySet()) {
+            Histogram histogram = entry.getValue().latency().getIntervalHistogram();
+            answered += histogram.getTotalCount();
+            JSONObject summary = summarize(histogram);
+            summary.put("errors", entry.getValue().errors().get());
+            actions.put(entry.getKey(), summary);
+            print(entry.getKey(), histogram, entry.getValue().errors().get());
+        }
+        report.put("actions", actions);
+        report.put("achievedRate", answered / (double) options.durationSeconds());
+
+        Histogram eachTill = probe.eachTill.getIntervalHistogram();
+        Histogram allTills = probe.allTills.getIntervalHistogram();
+        print("propagation, per till", eachTill, 0);
+        print("propagation, all tills", allTills, 0);
+        JSONObject propagation = new JSONObject();
+        propagation.put("eachTill", summarize(eachTill));
+        propagation.put("allTills", summarize(allTills));
+        report.put("propagation", propagation);
+        System.out.printf("%nAchieved %.1f requests/s%n", answered / (double) options.durationSeconds());
+        return report;
+    }
+
+    // Histograms are in microseconds, reports in milliseconds
+    private static JSONObject summarize(Histogram histogram) {
+        JSONObject summary = new JSONObject();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("p50Ms", histogram.getValueAtPercentile(50) / 1000.0);
+        summary.put("p90Ms", histogram.getValueAtPercentile(90) / 1000.0);
+        summary.put("p99Ms", histogram.getValueAtPercentile(99) / 1000.0);
+        summary.put("p999Ms", histogram.getValueAtPercentile(99.9) / 1000.0);
+        summary.put("maxMs", histogram.getMaxValue() / 1000.0);
+        return summary;
+    }
+
+    private static void print(String name, Histogram histogram, long errors) {
+        System.out.printf("%-22s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), errors,
+            histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMaxValue() / 1000.0);
+    }
+
+    // Each action repeated by its weight, so a uniform pick follows the mix
+    private static String[] weightedActions(Map<String, Integer> mix) {
+        List<String> actions = new ArrayList<>();
+        mix.forEach((action, weight) -> IntStream.range(0, weight).forEach(i -> actions.add(action)));
+        if (actions.isEmpty()) {
+            throw new IllegalArgumentException("The mix needs at least one action with a weight above zero");
+        }
+        return actions.toArray(String[]::new);
+    }
+
+    // Products with enough stock that no run sells out, in a category of their own
+    private static List<Long> seed(ConfigurableApplicationContext context, int count) {
+        context.getBean(ICategoryService.class).createCategory(new CategoryDTO(CATEGORY_ID, "Load test"));
+        IProductService productService = context.getBean(IProductService.class);
+        productService.importProducts(IntStream.range(0, count)
+            .mapToObj(i -> new ProductDTO(null, "Load test " + i, STOCK, 1.0 + i % 100, CATEGORY_ID))
+            .iterator());
+        List<Long> ids = new ArrayList<>();
+        for (ProductDTO product : productService.getAllProducts()) {
+            if (product.categoryId() == CATEGORY_ID) {
+                ids.add(product.productId());
+            }
+        }
+        return ids;
+    }
+
+    // The first products of the REST listing; the server's own stock is used as it is
+    private static List<Long> fetchProductIds(URI socketUrl, int count) throws IOException, InterruptedException {
+        URI listing = URI.create(socketUrl.toString()
+            .replaceFirst("^ws", "http")
+            .replaceFirst("/inventory-socket.*$", "/api/products?minStock=1&limit=" + Math.min(count + 1, 1000)));
+        HttpResponse<String> response = HttpClient.newHttpClient()
+            .send(HttpRequest.newBuilder(listing).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + listing + " answered " + response.statusCode());
+        }
+        JSONArray items = new JSONObject(response.body()).getJSONArray("items");
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < items.length(); i++) {
+            ids.add(items.getJSONObject(i).getLong("productId"));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,249 @@
+package com.vaderpos.inventory.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+// Starts the packaged service over and over in each startup mode and times how long a till has
+// to wait: from launching the JVM until /inventory-socket accepts a connection and sends its
+// first snapshot. The CDS archives are trained first against the same embedded database the
+// timed runs use. Prints a summary and writes it as JSON like SocketLoadTest does.
+public final class StartupBenchmark {
+
+    private static final Set<String> MODES = Set.of("jit", "cds", "aot", "aot-cds");
+    private static final Set<String> KNOWN = Set.of("app", "modes", "runs", "report");
+    private static final Pattern STARTED = Pattern.compile("Started InventoryApplication in ([0-9.]+) seconds");
+    private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        Path app = Path.of(options.getOrDefault("app", "target/application/inventory-0.0.1-SNAPSHOT.jar"));
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "jit,cds,aot,aot-cds").split(","));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        Path reportPath = Path.of(options.getOrDefault("report", "target/startup-report.json"));
+        if (!Files.exists(app)) {
+            throw new IllegalArgumentException(app + " does not exist; build it with mvn -Pfast-startup verify");
+        }
+        if (!MODES.containsAll(modes) || runs <= 0) {
+            throw new IllegalArgumentException("modes must be among " + MODES + " and runs greater than zero");
+        }
+
+        Path logs = Files.createDirectories(reportPath.toAbsolutePath().getParent().resolve("startup-logs"));
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            List<String> appArgs = List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--spring.flyway.locations=classpath:database/migration",
+                "--spring.jpa.hibernate.ddl-auto=validate",
+                "--spring.jpa.open-in-view=false");
+
+            // The first start migrates the database, which no timed run should pay for
+            Map<String, JSONObject> training = new LinkedHashMap<>();
+            for (String mode : modes) {
+                if (mode.endsWith("cds")) {
+                    training.put(mode, train(app, mode, appArgs, logs));
+                }
+            }
+            if (training.isEmpty()) {
+                time(app, "jit", appArgs, logs.resolve("warmup.log"));
+            }
+
+            // Modes take turns so a machine getting busier mid-run does not favour one of them
+            Map<String, List<Run>> results = new LinkedHashMap<>();
+            modes.forEach(mode -> results.put(mode, new ArrayList<>()));
+            for (int i = 0; i < runs; i++) {
+                for (String mode : modes) {
+                    results.get(mode).add(time(app, mode, appArgs, logs.resolve(mode + "-" + i + ".log")));
+                }
+            }
+
+            JSONObject report = report(results, training, runs);
+            if (reportPath.getParent() != null) {
+                Files.createDirectories(reportPath.getParent());
+            }
+            Files.writeString(reportPath, report.toString(2));
+            System.out.println("Report written to " + reportPath.toAbsolutePath());
+        }
+    }
+
+    private record Run(long firstConnectionMs, Double startedMs) {}
+
+    // Starts the app up to the end of context refresh and dumps the classes it loaded
+    private static JSONObject train(Path app, String mode, List<String> appArgs, Path logs) throws Exception {
+        Path archive = archive(app, mode);
+        Files.deleteIfExists(archive);
+        List<String> command = new ArrayList<>(List.of(java(), "-XX:ArchiveClassesAtExit=" + archive));
+        if (mode.startsWith("aot")) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.add("-Dspring.context.exit=onRefresh");
+        command.addAll(List.of("-jar", app.toString()));
+        command.addAll(appArgs);
+        command.add("--server.port=0");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logs.resolve(mode + "-training.log").toFile())
+            .start();
+        if (!process.waitFor(2, TimeUnit.MINUTES) || !Files.exists(archive)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Training run for " + mode + " failed, see " + logs.resolve(mode + "-training.log"));
+        }
+        JSONObject training = new JSONObject();
+        training.put("archive", archive.toString());
+        training.put("archiveBytes", Files.size(archive));
+        training.put("trainingMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return training;
+    }
+
+    private static Run time(Path app, String mode, List<String> appArgs, Path log) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of(java()));
+        if (mode.endsWith("cds")) {
+            command.add("-XX:SharedArchiveFile=" + archive(app, mode));
+        }
+        if (mode.startsWith("aot")) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.addAll(List.of("-jar", app.toString()));
+        command.addAll(appArgs);
+        command.add("--server.port=" + port);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        try {
+            awaitFirstSnapshot(URI.create("ws://localhost:" + port + "/inventory-socket"), process, start);
+            long firstConnectionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new Run(firstConnectionMs, startedMs(log));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    // Connects the way a till's reconnect loop does until the socket answers with a snapshot
+    private static void awaitFirstSnapshot(URI url, Process process, long start) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        while (System.nanoTime() - start < TIMEOUT_NANOS) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The service exited with " + process.exitValue() + " before serving the socket");
+            }
+            CompletableFuture<Void> snapshot = new CompletableFuture<>();
+            try {
+                WebSocket socket = client.newWebSocketBuilder()
+                    .buildAsync(url, new WebSocket.Listener() {
+                        @Override
+                        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                            snapshot.complete(null);
+                            return null;
+                        }
+                    })
+                    .get(5, TimeUnit.SECONDS);
+                snapshot.get(30, TimeUnit.SECONDS);
+                socket.abort();
+                return;
+            } catch (Exception notYet) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        }
+        throw new IllegalStateException("The socket was not served within two minutes");
+    }
+
+    // What the app itself reports, for comparison with what a client sees
+    private static Double startedMs(Path log) throws IOException {
+        Matcher matcher = STARTED.matcher(Files.readString(log));
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) * 1000 : null;
+    }
+
+    private static JSONObject report(Map<String, List<Run>> results, Map<String, JSONObject> training, int runs) {
+        JSONObject report = new JSONObject();
+        report.put("runs", runs);
+        report.put("javaVersion", System.getProperty("java.version"));
+        System.out.printf("%n%-10s %10s %10s %10s %14s%n", "mode", "min (ms)", "median", "max", "app started");
+        JSONObject modes = new JSONObject();
+        for (Map.Entry<String, List<Run>> entry : results.entrySet()) {
+            long[] times = entry.getValue().stream().mapToLong(Run::firstConnectionMs).sorted().toArray();
+            double[] started = entry.getValue().stream()
+                .filter(run -> run.startedMs() != null)
+                .mapToDouble(Run::startedMs).sorted().toArray();
+            JSONObject summary = new JSONObject();
+            summary.put("firstConnectionMs", new JSONArray(entry.getValue().stream().map(Run::firstConnectionMs).toList()));
+            summary.put("minMs", times[0]);
+            summary.put("medianMs", times[times.length / 2]);
+            summary.put("maxMs", times[times.length - 1]);
+            if (started.length > 0) {
+                summary.put("startedMedianMs", started[started.length / 2]);
+            }
+            if (training.containsKey(entry.getKey())) {
+                summary.put("training", training.get(entry.getKey()));
+            }
+            modes.put(entry.getKey(), summary);
+            System.out.printf("%-10s %10d %10d %10d %14s%n", entry.getKey(), times[0], times[times.length / 2],
+                times[times.length - 1], started.length > 0 ? String.format("%.0f", started[started.length / 2]) : "-");
+        }
+        report.put("modes", modes);
+        return report;
+    }
+
+    // AOT changes which classes load, so it gets an archive of its own
+    private static Path archive(Path app, String mode) {
+        return app.toAbsolutePath().getParent().resolve(mode.startsWith("aot") ? "application-aot.jsa" : "application.jsa");
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // Every option is --name=value, as for SocketLoadTest
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options look like --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        if (!KNOWN.containsAll(values.keySet())) {
+            throw new IllegalArgumentException("Unknown options, known ones are " + KNOWN);
+        }
+        return values;
+    }
+}
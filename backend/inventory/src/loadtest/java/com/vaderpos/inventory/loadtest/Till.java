@@ -0,0 +1,155 @@
+package com.vaderpos.inventory.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Recorder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// One simulated till on its own socket. The server answers a session's messages in the order
+// they arrived, so replies are matched to requests first in, first out; every frame with a
+// "status" is a reply, the rest are broadcasts. The probe till is one of these that only
+// takes the probe product and reports when each take committed.
+class Till implements WebSocket.Listener {
+
+    record Stats(Recorder latency, AtomicLong errors) {}
+
+    private record Pending(String action, long intendedAt) {}
+
+    private final BroadcastProbe probe;
+    private final Map<String, Stats> stats;
+    private final boolean isProbe;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final StringBuilder partial = new StringBuilder();
+    private final CompletableFuture<Void> synced = new CompletableFuture<>();
+    private WebSocket socket;
+    private int probeQuantity = Integer.MAX_VALUE;
+
+    Till(BroadcastProbe probe, Map<String, Stats> stats, boolean isProbe) {
+        this.probe = probe;
+        this.stats = stats;
+        this.isProbe = isProbe;
+    }
+
+    CompletableFuture<Void> connect(HttpClient client, URI url, String subprotocol) {
+        WebSocket.Builder builder = client.newWebSocketBuilder();
+        if (subprotocol != null) {
+            builder.subprotocols(subprotocol);
+        }
+        return builder.buildAsync(url, this).thenCompose(ws -> synced);
+    }
+
+    // Latency counts from intendedAt, not from when the send happened, so a stalled server
+    // shows up in the numbers instead of just slowing the tills down
+    void send(String action, long productId, long intendedAt) {
+        JSONObject request = new JSONObject();
+        request.put("action", isProbe ? "takeProduct" : action);
+        request.put("productId", isProbe ? probe.productId() : productId);
+        if (isProbe || !action.equals("getProduct")) {
+            request.put("quantity", 1);
+        }
+        // A WebSocket only takes one send at a time
+        synchronized (this) {
+            pending.add(new Pending(action, intendedAt));
+            socket.sendText(request.toString(), true).join();
+        }
+    }
+
+    void close() {
+        socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        this.socket = webSocket;
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            long now = System.nanoTime();
+            JSONObject frame = new JSONObject(partial.toString());
+            partial.setLength(0);
+            if (frame.has("status")) {
+                reply(frame, now);
+            } else {
+                broadcast(frame, now);
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        synced.completeExceptionally(error);
+        System.err.println("Till connection failed: " + error.getMessage());
+    }
+
+    private void reply(JSONObject frame, long now) {
+        Pending request = pending.poll();
+        if (request == null) {
+            return;
+        }
+        if (isProbe) {
+            if (frame.has("remainingStock")) {
+                probe.committed(frame.getInt("remainingStock"), now);
+            }
+            return;
+        }
+        Stats actionStats = stats.get(request.action());
+        actionStats.latency().recordValue(TimeUnit.NANOSECONDS.toMicros(now - request.intendedAt()));
+        if (!frame.getString("status").equals("success")) {
+            actionStats.errors().incrementAndGet();
+        }
+    }
+
+    private void broadcast(JSONObject frame, long now) {
+        if (frame.optString("type").equals("categoryUpdate")) {
+            synced.complete(null);
+            return;
+        }
+        Object products = frame.opt("updatedProducts");
+        if (products == null) {
+            products = frame.opt("products");
+        }
+        Integer quantity = probeQuantity(products);
+        if (quantity != null && !isProbe) {
+            if (quantity < probeQuantity && probeQuantity != Integer.MAX_VALUE) {
+                probe.seen(quantity, probeQuantity, now);
+            }
+            probeQuantity = quantity;
+        }
+    }
+
+    // Rows come as an array of objects, or as one array per field in the columnar format
+    private Integer probeQuantity(Object products) {
+        if (products instanceof JSONArray rows) {
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.getJSONObject(i);
+                if (row.getLong("productId") == probe.productId()) {
+                    return row.getInt("quantity");
+                }
+            }
+        } else if (products instanceof JSONObject columns) {
+            JSONArray ids = columns.getJSONArray("productId");
+            for (int i = 0; i < ids.length(); i++) {
+                if (ids.getLong(i) == probe.productId()) {
+                    return columns.getJSONArray("quantity").getInt(i);
+                }
+            }
+        }
+        return null;
+    }
+}
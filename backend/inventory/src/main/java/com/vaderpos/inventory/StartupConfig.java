@@ -0,0 +1,43 @@
+package com.vaderpos.inventory;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Keeps beans nobody needs at startup out of it. The OpenAPI docs are only read by developers,
+// so springdoc's beans are created on the first request for them instead of delaying the socket
+// every till reconnects to. Spring AOT keeps the flag, so this holds in the fast-startup build.
+@Configuration(proxyBeanMethods = false)
+public class StartupConfig {
+
+    private static final String[] LAZY_PACKAGES = { "org.springdoc." };
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyNonCriticalBeans() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                // Infrastructure beans are created up front whatever the flag says
+                if (definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE) {
+                    continue;
+                }
+                String source = sourceOf(definition);
+                for (String lazyPackage : LAZY_PACKAGES) {
+                    if (source != null && source.startsWith(lazyPackage)) {
+                        definition.setLazyInit(true);
+                    }
+                }
+            }
+        };
+    }
+
+    // Beans from @Bean methods have no class name of their own; use the configuration declaring them
+    private static String sourceOf(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated && annotated.getFactoryMethodMetadata() != null) {
+            return annotated.getFactoryMethodMetadata().getDeclaringClassName();
+        }
+        return definition.getBeanClassName();
+    }
+}
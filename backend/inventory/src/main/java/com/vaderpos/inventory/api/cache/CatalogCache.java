@@ -0,0 +1,185 @@
+package com.vaderpos.inventory.api.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Read-through cache of catalog DTOs keyed by id, plus an immutable snapshot of all of them.
+// Writers never put values in: they invalidate the ids they changed after the write has
+// committed, and the next read reloads just those rows. That keeps concurrent stock changes,
+// which can finish in any order, from leaving an older value behind. The monitor only guards
+// in-memory bookkeeping; database loads run outside it so a virtual thread waiting on JDBC
+// never pins its carrier.
+public class CatalogCache<K extends Comparable<K>, V> {
+
+    private final Function<V, K> keyOf;
+    // Sorted so the snapshot comes out in id order, like the table scan it replaces
+    private final ConcurrentSkipListMap<K, V> entries = new ConcurrentSkipListMap<>();
+    // Ids invalidated since the last snapshot was built
+    private final Set<K> stale = ConcurrentHashMap.newKeySet();
+    private final Counter hits;
+    private final Counter misses;
+
+    // null whenever something changed since it was built
+    private volatile List<V> snapshot;
+    // Bumped on every invalidation so a reload that raced with a write is not stored
+    private volatile long generation;
+    // Once the whole table has been loaded, an id that is neither cached nor stale does not exist
+    private volatile boolean loaded;
+    // One snapshot rebuild at a time, so concurrent misses wait for it instead of loading too
+    private final ReentrantLock rebuild = new ReentrantLock();
+    // Ids invalidated while a rebuild was loading; what it read for them may already be old
+    private final Set<K> racing = new HashSet<>();
+    private boolean rebuilding;
+
+    public CatalogCache(String name, Function<V, K> keyOf, MeterRegistry meterRegistry) {
+        this.keyOf = keyOf;
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("cache.size", entries, ConcurrentSkipListMap::size).tag("cache", name)
+            .register(meterRegistry);
+    }
+
+    public Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        V value = entries.get(key);
+        if (value != null) {
+            hits.increment();
+            return Optional.of(value);
+        }
+        if (loaded && !stale.contains(key)) {
+            // Known not to exist, no need to ask the database
+            hits.increment();
+            return Optional.empty();
+        }
+        misses.increment();
+        long seen = generation;
+        Optional<V> loadedValue = loader.apply(key);
+        synchronized (this) {
+            if (generation == seen) {
+                loadedValue.ifPresent(v -> entries.put(key, v));
+                stale.remove(key);
+            }
+        }
+        return loadedValue;
+    }
+
+    // The values of the keys that exist, in the order asked for; every miss is loaded in one call
+    public List<V> getMany(Collection<K> keys, Function<Collection<K>, List<V>> loadSome) {
+        Map<K, V> found = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            V value = entries.get(key);
+            if (value != null) {
+                found.put(key, value);
+            } else if (!loaded || stale.contains(key)) {
+                missing.add(key);
+            }
+        }
+        hits.increment(keys.size() - missing.size());
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            long seen = generation;
+            List<V> loadedValues = loadSome.apply(missing);
+            synchronized (this) {
+                if (generation == seen) {
+                    for (V value : loadedValues) {
+                        entries.put(keyOf.apply(value), value);
+                    }
+                    stale.removeAll(missing);
+                }
+            }
+            for (V value : loadedValues) {
+                found.put(keyOf.apply(value), value);
+            }
+        }
+        List<V> values = new ArrayList<>(found.size());
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    // loadAll is only used the first time; later rebuilds reload just the stale ids through loadSome.
+    // Ids a write invalidates during a load stay stale and are reloaded in another round.
+    public List<V> getAll(Supplier<List<V>> loadAll, Function<Collection<K>, List<V>> loadSome) {
+        List<V> current = snapshot;
+        if (current != null) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        rebuild.lock();
+        try {
+            while (true) {
+                Set<K> reloading;
+                synchronized (this) {
+                    if (snapshot != null) {
+                        return snapshot;
+                    }
+                    reloading = loaded ? new HashSet<>(stale) : null;
+                    rebuilding = true;
+                }
+                List<V> values = reloading == null ? loadAll.get()
+                    : reloading.isEmpty() ? List.of() : loadSome.apply(reloading);
+                synchronized (this) {
+                    rebuilding = false;
+                    for (V value : values) {
+                        K key = keyOf.apply(value);
+                        if (!racing.contains(key)) {
+                            entries.put(key, value);
+                        }
+                    }
+                    if (reloading == null) {
+                        stale.retainAll(racing);
+                        loaded = true;
+                    } else {
+                        reloading.removeAll(racing);
+                        stale.removeAll(reloading);
+                    }
+                    racing.clear();
+                    if (stale.isEmpty()) {
+                        snapshot = List.copyOf(entries.values());
+                        return snapshot;
+                    }
+                }
+            }
+        } finally {
+            rebuild.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        invalidateAll(List.of(key));
+    }
+
+    public synchronized void invalidateAll(Collection<K> keys) {
+        generation++;
+        for (K key : keys) {
+            entries.remove(key);
+            stale.add(key);
+            if (rebuilding) {
+                racing.add(key);
+            }
+        }
+        snapshot = null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.vaderpos.inventory.api.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+// Version of the catalog for conditional GETs. The services bump it together with the cache
+// invalidation once a write has committed, so as long as the version has not moved nothing a
+// client fetched under it can have changed. Every changed row also remembers the version it
+// changed at, which gives single rows their own tag. Tags include the startup time, because
+// after a restart the counters start over and writes made by another instance were not seen.
+@Component
+public class CatalogVersion {
+
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+    // Rows absent here have not changed since startup
+    private final Map<Long, Long> productVersions = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> categoryVersions = new ConcurrentHashMap<>();
+
+    public void productsChanged(Collection<Long> productIds) {
+        long changedAt = version.incrementAndGet();
+        for (Long productId : productIds) {
+            productVersions.put(productId, changedAt);
+        }
+    }
+
+    public void categoryChanged(Integer categoryId) {
+        categoryVersions.put(categoryId, version.incrementAndGet());
+    }
+
+    // Callers must take the tag before reading the data it describes: read the other way round,
+    // a write landing in between would tag old data with the new version
+    public String catalogTag() {
+        return tag(version.get());
+    }
+
+    public String productTag(Long productId) {
+        return tag(productVersions.getOrDefault(productId, 0L));
+    }
+
+    public String categoryTag(Integer categoryId) {
+        return tag(categoryVersions.getOrDefault(categoryId, 0L));
+    }
+
+    private String tag(long rowVersion) {
+        return "\"" + epoch + "-" + rowVersion + "\"";
+    }
+}
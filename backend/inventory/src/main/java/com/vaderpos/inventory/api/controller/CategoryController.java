@@ -5,13 +5,16 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.CrossOrigin; // <-- import this
 import org.springframework.web.bind.annotation.GetMapping;
 
+import com.vaderpos.inventory.api.cache.CatalogVersion;
 import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
 import com.vaderpos.inventory.api.service.ICategoryService;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
 import java.util.Optional;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -20,21 +23,34 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 
 @RestController
 @RequestMapping("api/categories")
-@CrossOrigin(origins = "http://localhost:5173") 
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = "ETag")
 public class CategoryController {
     private final ICategoryService categoryService;
+    private final CatalogVersion catalogVersion;
 
-    public CategoryController(ICategoryService categoryService) {
+    public CategoryController(ICategoryService categoryService, CatalogVersion catalogVersion) {
         this.categoryService = categoryService;
+        this.catalogVersion = catalogVersion;
     }
 
+    // Pass nextCursor back as cursor to get the following page; conditional GETs are answered
+    // from the catalog version as in ProductController
     @GetMapping
-    public List<CategoryDTO> getAllCategories() {
-        return categoryService.getAllCategories();
+    public CursorPageDTO<CategoryDTO> getCategories(@RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "100") int limit,
+                                                    @RequestParam(required = false) String name,
+                                                    WebRequest request) {
+        if (request.checkNotModified(catalogVersion.catalogTag())) {
+            return null;
+        }
+        return categoryService.getCategoryPage(name, cursor, limit);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryDTO> getCategoryById(@PathVariable Integer id) {
+    public ResponseEntity<CategoryDTO> getCategoryById(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(catalogVersion.categoryTag(id))) {
+            return null;
+        }
         Optional<CategoryDTO> categoryOpt = categoryService.getCategory(id);
         return categoryOpt.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
     }
@@ -1,6 +1,10 @@
 package com.vaderpos.inventory.api.controller;
 
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -8,33 +12,126 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaderpos.inventory.api.cache.CatalogVersion;
+import com.vaderpos.inventory.api.export.ProductExportWriter;
+import com.vaderpos.inventory.api.export.ProductImportReader;
+import com.vaderpos.inventory.api.search.ProductSearchIndex;
+import com.vaderpos.inventory.api.dto.ImportReportDTO;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
 import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductQueryDTO;
 import com.vaderpos.inventory.api.dto.ProductUpdateDTO;
+import com.vaderpos.inventory.api.dto.StockBatchDTO;
+import com.vaderpos.inventory.api.dto.StockLevelDTO;
 import com.vaderpos.inventory.api.service.IProductService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 
 @RestController
 @RequestMapping("api/products") 
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = "ETag")
 public class ProductController {
     private final IProductService productService;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final ProductSearchIndex productSearchIndex;
 
-    public ProductController(IProductService productService) {
+    public ProductController(IProductService productService, ObjectMapper objectMapper, CatalogVersion catalogVersion,
+                             ProductSearchIndex productSearchIndex) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.productSearchIndex = productSearchIndex;
     }
 
+    // Pass nextCursor back as cursor to get the following page. Tagged with the catalog version:
+    // a matching If-None-Match gets a 304 before anything is read (returning null is how Spring
+    // MVC ends a request that checkNotModified already answered)
     @GetMapping
-    public List<ProductDTO> getAllProducts() {
-        return productService.getAllProducts();
+    public CursorPageDTO<ProductDTO> getProducts(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 @RequestParam(required = false) Integer categoryId,
+                                                 @RequestParam(required = false) String name,
+                                                 @RequestParam(required = false) Integer minStock,
+                                                 @RequestParam(required = false) Integer maxStock,
+                                                 @RequestParam(defaultValue = "productId") String sort,
+                                                 @RequestParam(defaultValue = "asc") String direction,
+                                                 WebRequest request) {
+        if (request.checkNotModified(catalogVersion.catalogTag())) {
+            return null;
+        }
+        ProductQueryDTO query = new ProductQueryDTO(categoryId, name, minStock, maxStock, sort, direction);
+        return productService.getProductPage(query, cursor, limit);
+    }
+
+    // Streams the whole catalog, or only rows changed after updatedAfter (ISO-8601), as rows are
+    // read from the database; gzip-compressed when the client accepts it
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedAfter,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ProductExportWriter.Format exportFormat = ProductExportWriter.Format.of(format);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 8192) : null;
+            ProductExportWriter writer = new ProductExportWriter(exportFormat, gzip ? gzipOut : out, objectMapper);
+            productService.exportProducts(updatedAfter, writer);
+            writer.flush();
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(exportFormat.getMediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products." + exportFormat.getExtension())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // Bulk create from a CSV file (same columns as the export) or JSON (an array or NDJSON);
+    // the body is read row by row as it is inserted rather than buffered up front
+    @PostMapping(value = "/import", consumes = { "text/csv", MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public ImportReportDTO importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                          InputStream body) throws IOException {
+        Iterator<ProductDTO> rows = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+            ? ProductImportReader.csv(body)
+            : ProductImportReader.json(body, objectMapper);
+        return productService.importProducts(rows);
+    }
+
+    // Best name matches first, by prefix and then by shared trigrams so typos still find the
+    // product; answered from the in-memory index, which trails commits by the coalescing window
+    @GetMapping("/search")
+    public List<ProductDTO> searchProducts(@RequestParam String q,
+                                           @RequestParam(required = false) Integer categoryId,
+                                           @RequestParam(defaultValue = "20") int limit) {
+        return productSearchIndex.search(q, categoryId, limit);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDTO> getProduct(@PathVariable Long id) {
+    public ResponseEntity<ProductDTO> getProduct(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(catalogVersion.productTag(id))) {
+            return null;
+        }
         Optional<ProductDTO> productOpt = productService.getProduct(id);
         return productOpt.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
     }
@@ -49,6 +146,18 @@ public class ProductController {
         return productService.updateProduct(id, productUpdateDTO);
     }
 
+    @PostMapping("/stock/batch")
+    public List<StockLevelDTO> applyStockBatch(@RequestBody StockBatchDTO stockBatchDTO) {
+        if (stockBatchDTO == null || stockBatchDTO.action() == null) {
+            throw new IllegalArgumentException("Stock batch action is required");
+        }
+        return switch (stockBatchDTO.action()) {
+            case "take" -> productService.reduceProductStocks(stockBatchDTO.items());
+            case "return" -> productService.returnProductStocks(stockBatchDTO.items());
+            default -> throw new IllegalArgumentException("Unknown stock batch action: " + stockBatchDTO.action());
+        };
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
         productService.deleteProduct(id);
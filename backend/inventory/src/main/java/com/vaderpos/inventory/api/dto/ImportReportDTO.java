@@ -0,0 +1,4 @@
+package com.vaderpos.inventory.api.dto;
+
+public record ImportReportDTO(int imported, long elapsedMs, double rowsPerSecond) {
+}
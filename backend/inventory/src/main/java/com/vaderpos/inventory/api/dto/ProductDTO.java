@@ -1,4 +1,9 @@
 package com.vaderpos.inventory.api.dto;
 
-public record ProductDTO(Long productId, String productName, int quantity, double price, int categoryId) {
+// version is the row's optimistic lock version; null for products that are not saved yet
+public record ProductDTO(Long productId, String productName, int quantity, double price, int categoryId, Long version) {
+
+    public ProductDTO(Long productId, String productName, int quantity, double price, int categoryId) {
+        this(productId, productName, quantity, price, categoryId, null);
+    }
 }
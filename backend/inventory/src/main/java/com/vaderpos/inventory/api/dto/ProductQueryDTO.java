@@ -0,0 +1,7 @@
+package com.vaderpos.inventory.api.dto;
+
+// Filters and ordering for listing products; any filter may be null.
+// sortBy is productId, price or quantity, direction is asc or desc.
+public record ProductQueryDTO(Integer categoryId, String namePrefix, Integer minStock, Integer maxStock,
+                              String sortBy, String direction) {
+}
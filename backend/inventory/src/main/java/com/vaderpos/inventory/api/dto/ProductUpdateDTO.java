@@ -1,4 +1,5 @@
 package com.vaderpos.inventory.api.dto;
 
-public record ProductUpdateDTO(Long productID, String productName, Integer quantity, Double price, Integer categoryId) {
+// With a version the update only applies if the product is still at that version
+public record ProductUpdateDTO(Long productID, String productName, Integer quantity, Double price, Integer categoryId, Long version) {
 }
@@ -0,0 +1,5 @@
+package com.vaderpos.inventory.api.dto;
+
+// expiresAt is epoch milliseconds
+public record ReservationDTO(String reservationId, Long productId, int quantity, long expiresAt) {
+}
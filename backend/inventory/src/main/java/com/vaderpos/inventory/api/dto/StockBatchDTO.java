@@ -0,0 +1,7 @@
+package com.vaderpos.inventory.api.dto;
+
+import java.util.List;
+
+// action is either "take" or "return"
+public record StockBatchDTO(String action, List<StockChangeDTO> items) {
+}
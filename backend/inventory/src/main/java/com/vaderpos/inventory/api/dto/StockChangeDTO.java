@@ -0,0 +1,4 @@
+package com.vaderpos.inventory.api.dto;
+
+public record StockChangeDTO(Long productId, Integer quantity) {
+}
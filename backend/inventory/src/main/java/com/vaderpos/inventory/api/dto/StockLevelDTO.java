@@ -0,0 +1,4 @@
+package com.vaderpos.inventory.api.dto;
+
+public record StockLevelDTO(Long productId, int remainingStock) {
+}
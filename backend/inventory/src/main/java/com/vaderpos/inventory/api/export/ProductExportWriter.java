@@ -0,0 +1,106 @@
+package com.vaderpos.inventory.api.export;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+
+// Writes products to a stream one row at a time as NDJSON (one JSON object per line) or CSV.
+// Only the writer's own buffer is held in memory, however many rows go through it.
+public class ProductExportWriter implements Consumer<ProductDTO>, Flushable {
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: " + name);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Format format;
+    private final Writer writer;
+    private final ObjectMapper objectMapper;
+
+    public ProductExportWriter(Format format, OutputStream out, ObjectMapper objectMapper) {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.objectMapper = objectMapper;
+        if (format == Format.CSV) {
+            writeLine("productId,productName,quantity,price,categoryId");
+        }
+    }
+
+    // A failed write (usually the client going away) aborts the export
+    @Override
+    public void accept(ProductDTO product) {
+        if (format == Format.NDJSON) {
+            try {
+                writeLine(objectMapper.writeValueAsString(product));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            writeLine(product.productId() + "," + csvField(product.productName()) + "," + product.quantity()
+                + "," + product.price() + "," + product.categoryId());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,143 @@
+package com.vaderpos.inventory.api.export;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+
+// Reads products for a bulk import one at a time straight off the request body, in the same
+// formats the export writes: CSV with a header row, or JSON (an array or one object per line).
+// Any productId in the input is ignored.
+public final class ProductImportReader {
+
+    private ProductImportReader() {
+    }
+
+    public static Iterator<ProductDTO> json(InputStream in, ObjectMapper objectMapper) throws IOException {
+        // readValues unwraps a top-level array and also reads whitespace-separated objects
+        return objectMapper.readerFor(ProductDTO.class).readValues(in);
+    }
+
+    public static Iterator<ProductDTO> csv(InputStream in) throws IOException {
+        CsvRecords records = new CsvRecords(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = records.next();
+        if (header == null) {
+            return List.<ProductDTO>of().iterator();
+        }
+        int name = column(header, "productName");
+        int quantity = column(header, "quantity");
+        int price = column(header, "price");
+        int category = column(header, "categoryId");
+
+        return new Iterator<>() {
+            private List<String> nextRecord = read();
+            private int line = 1;
+
+            @Override
+            public boolean hasNext() {
+                return nextRecord != null;
+            }
+
+            @Override
+            public ProductDTO next() {
+                if (nextRecord == null) {
+                    throw new NoSuchElementException();
+                }
+                List<String> record = nextRecord;
+                line++;
+                nextRecord = read();
+                if (record.size() < header.size()) {
+                    throw new IllegalArgumentException("CSV row " + line + " has " + record.size()
+                        + " fields, expected " + header.size());
+                }
+                try {
+                    return new ProductDTO(null, record.get(name),
+                        Integer.parseInt(record.get(quantity).trim()),
+                        Double.parseDouble(record.get(price).trim()),
+                        Integer.parseInt(record.get(category).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("CSV row " + line + " has an invalid number: " + e.getMessage());
+                }
+            }
+
+            private List<String> read() {
+                try {
+                    List<String> record = records.next();
+                    // Skip blank lines, such as a trailing newline at the end of the file
+                    while (record != null && record.size() == 1 && record.get(0).isBlank()) {
+                        record = records.next();
+                    }
+                    return record;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private static int column(List<String> header, String name) {
+        int index = header.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("CSV header is missing the " + name + " column");
+        }
+        return index;
+    }
+
+    // RFC 4180 records: quoted fields may contain commas, doubled quotes and line breaks
+    private static final class CsvRecords {
+        private final Reader reader;
+
+        private CsvRecords(Reader reader) {
+            this.reader = reader;
+        }
+
+        // null at end of input
+        private List<String> next() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.vaderpos.inventory.api.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// A row of inventory_outbox. Written only by the database triggers from V6__Inventory_outbox.
+@Entity
+@Table(name = "inventory_outbox")
+public class OutboxEvent {
+
+    public static final String PRODUCT = "product";
+    public static final String CATEGORY = "category";
+
+    @Id
+    private Long id;
+    private String entity;
+    private Long entityId;
+    private boolean deleted;
+    private Instant createdAt;
+    private Instant publishedAt;
+
+    // Getters
+    public Long getId() { return id; }
+
+    public String getEntity() { return entity; }
+
+    public Long getEntityId() { return entityId; }
+
+    public boolean isDeleted() { return deleted; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    public Instant getPublishedAt() { return publishedAt; }
+}
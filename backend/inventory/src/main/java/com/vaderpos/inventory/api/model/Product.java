@@ -2,11 +2,15 @@ package com.vaderpos.inventory.api.model;
 
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 
 // JPA Entity representing a Product
 // Each instance corresponds to a row in the "products" table in the database.
@@ -16,13 +20,21 @@ import jakarta.persistence.Id;
 @Entity
 public class Product {
 
+    // Pooled sequence rather than IDENTITY so Hibernate can batch inserts; one round trip
+    // to the sequence hands out 50 ids (see V4__Product_id_pooled_sequence)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_id_seq")
+    @SequenceGenerator(name = "product_id_seq", sequenceName = "product_product_id_seq", allocationSize = 50)
     private Long productId;
     private String productName;
     private int quantity;
     private BigDecimal price;
     private int categoryId;
+    // Maintained by the product_updated_at trigger
+    @Column(insertable = false, updatable = false)
+    private Instant updatedAt;
+    @Version
+    private Long version;
 
     // Getters and Setters
     public Long getProductId() { return productId; }
@@ -39,4 +51,8 @@ public class Product {
 
     public int getCategoryId() { return categoryId; }
     public void setCategoryId(int categoryId) { this.categoryId = categoryId; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+
+    public Long getVersion() { return version; }
 }
\ No newline at end of file
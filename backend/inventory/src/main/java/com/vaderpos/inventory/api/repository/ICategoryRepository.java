@@ -1,7 +1,20 @@
 package com.vaderpos.inventory.api.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import com.vaderpos.inventory.api.model.ProductCategory;
 
 public interface ICategoryRepository extends JpaRepository<ProductCategory, Integer> {
+    // Keyset pages in id order
+    List<ProductCategory> findByCategoryIdGreaterThanOrderByCategoryIdAsc(Integer categoryId, Limit limit);
+
+    List<ProductCategory> findByCategoryIdGreaterThanAndCategoryNameStartingWithIgnoreCaseOrderByCategoryIdAsc(
+        Integer categoryId, String namePrefix, Limit limit);
+
+    // Ids only, for validating many rows against the category table in one query
+    @Query("SELECT c.categoryId FROM ProductCategory c")
+    List<Integer> findAllIds();
 }
@@ -0,0 +1,30 @@
+package com.vaderpos.inventory.api.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vaderpos.inventory.api.model.OutboxEvent;
+
+public interface IOutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Marks up to limit of the oldest unpublished events as published and returns them as
+    // [id, entity, entity_id, deleted], in no particular order. Rows another relay is claiming
+    // are skipped rather than waited on. Must run in the transaction that publishes them, so a
+    // failed publish rolls the claim back.
+    @Query(value = "UPDATE inventory_outbox SET published_at = clock_timestamp() " +
+                   "WHERE id IN (SELECT id FROM inventory_outbox WHERE published_at IS NULL " +
+                   "             ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING id, entity, entity_id, deleted", nativeQuery = true)
+    List<Object[]> claimUnpublished(@Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") Instant before);
+}
@@ -1,8 +1,102 @@
 package com.vaderpos.inventory.api.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 import com.vaderpos.inventory.api.model.Product;
 
-public interface IProductRepository extends JpaRepository<Product, Long> {
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+// Filtered, keyset-paginated listings go through JpaSpecificationExecutor with ProductSpecifications
+public interface IProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+    String EXPORT_FETCH_SIZE = "500";
+
     long countByCategoryId(Integer categoryId);
+
+    // SELECT ... FOR UPDATE: holds the row until the calling transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.productId = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT p.quantity FROM Product p WHERE p.productId = :id")
+    Optional<Integer> findQuantityById(@Param("id") Long id);
+
+    // The stock UPDATEs below are single statements, so they cannot lose updates and need no
+    // retries; they bump version so that entity updates based on an older read fail instead.
+
+    // Conditional decrement: only matches when enough stock is left besides the held units,
+    // so concurrent takes can never push the quantity below zero or into stock a reservation
+    // holds. Returns the remaining stock, or empty when the product is missing or the stock is
+    // insufficient.
+    @Transactional
+    @Query(value = "UPDATE product SET quantity = quantity - :quantity, version = version + 1 " +
+                   "WHERE product_id = :id AND quantity - :held >= :quantity " +
+                   "RETURNING quantity", nativeQuery = true)
+    Optional<Integer> decrementStock(@Param("id") Long id, @Param("quantity") int quantity, @Param("held") int held);
+
+    // Returns the new stock, or empty when the product is missing.
+    @Transactional
+    @Query(value = "UPDATE product SET quantity = quantity + :quantity, version = version + 1 " +
+                   "WHERE product_id = :id " +
+                   "RETURNING quantity", nativeQuery = true)
+    Optional<Integer> incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Locks the rows in id order until the calling transaction ends. The batched UPDATEs below
+    // lock rows in whatever order their join visits them, so two baskets sharing products could
+    // otherwise each hold a row the other one waits for and deadlock.
+    @Query(value = "SELECT product_id FROM product WHERE product_id = ANY(CAST(:ids AS bigint[])) " +
+                   "ORDER BY product_id FOR UPDATE", nativeQuery = true)
+    List<Long> lockInIdOrder(@Param("ids") Long[] ids);
+
+    // Batched variants: ids, quantities and held units are parallel arrays and the ids must be
+    // distinct. Each returned row is [product_id, quantity]; lines that did not match are simply
+    // absent.
+    @Transactional
+    @Query(value = "UPDATE product p SET quantity = p.quantity - line.quantity, version = p.version + 1 " +
+                   "FROM unnest(CAST(:ids AS bigint[]), CAST(:quantities AS integer[]), CAST(:helds AS integer[])) " +
+                   "AS line(id, quantity, held) " +
+                   "WHERE p.product_id = line.id AND p.quantity - line.held >= line.quantity " +
+                   "RETURNING p.product_id, p.quantity", nativeQuery = true)
+    List<Object[]> decrementStocks(@Param("ids") Long[] ids, @Param("quantities") Integer[] quantities,
+                                   @Param("helds") Integer[] helds);
+
+    @Transactional
+    @Query(value = "UPDATE product p SET quantity = p.quantity + line.quantity, version = p.version + 1 " +
+                   "FROM unnest(CAST(:ids AS bigint[]), CAST(:quantities AS integer[])) AS line(id, quantity) " +
+                   "WHERE p.product_id = line.id " +
+                   "RETURNING p.product_id, p.quantity", nativeQuery = true)
+    List<Object[]> incrementStocks(@Param("ids") Long[] ids, @Param("quantities") Integer[] quantities);
+
+    @Query("SELECT p.productId, p.quantity FROM Product p WHERE p.productId IN :ids")
+    List<Object[]> findQuantitiesByIds(@Param("ids") Collection<Long> ids);
+
+    // Exports read through a server-side cursor, EXPORT_FETCH_SIZE rows per round trip.
+    // Must be consumed inside a transaction and closed afterwards.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.productId")
+    Stream<Product> streamAll();
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Product p WHERE p.updatedAt > :since ORDER BY p.productId")
+    Stream<Product> streamUpdatedAfter(@Param("since") Instant since);
 }
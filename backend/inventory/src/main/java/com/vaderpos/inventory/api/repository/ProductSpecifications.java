@@ -0,0 +1,69 @@
+package com.vaderpos.inventory.api.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.vaderpos.inventory.api.model.Product;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+
+// Filters for listing products a page at a time. Paging is keyset based: a page starts right
+// after the (sort value, product id) of the last row of the previous page, so a deep page costs
+// the same as the first one and rows added in between never shift what comes next.
+public final class ProductSpecifications {
+
+    private ProductSpecifications() {
+    }
+
+    public static Specification<Product> matching(Integer categoryId, String namePrefix,
+                                                  Integer minStock, Integer maxStock) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (categoryId != null) {
+                predicates.add(cb.equal(root.get("categoryId"), categoryId));
+            }
+            if (namePrefix != null && !namePrefix.isBlank()) {
+                // upper() to match the idx_product_name_prefix index
+                predicates.add(cb.like(cb.upper(root.get("productName")),
+                    escapeLike(namePrefix.toUpperCase()) + "%", '\\'));
+            }
+            if (minStock != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("quantity"), minStock));
+            }
+            if (maxStock != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("quantity"), maxStock));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Rows after lastId in product id order
+    public static Specification<Product> afterId(Long lastId, boolean descending) {
+        return (root, query, cb) -> descending
+            ? cb.lessThan(root.get("productId"), lastId)
+            : cb.greaterThan(root.get("productId"), lastId);
+    }
+
+    // Rows after (lastValue, lastId) in (sortField, product id) order
+    public static <T extends Comparable<? super T>> Specification<Product> after(String sortField, T lastValue,
+                                                                                Long lastId, boolean descending) {
+        return (root, query, cb) -> {
+            Path<T> value = root.get(sortField);
+            Path<Long> id = root.get("productId");
+            if (descending) {
+                // The plain bound on the sort column lets the index scan start at lastValue
+                return cb.and(cb.lessThanOrEqualTo(value, lastValue),
+                    cb.or(cb.lessThan(value, lastValue), cb.lessThan(id, lastId)));
+            }
+            return cb.and(cb.greaterThanOrEqualTo(value, lastValue),
+                cb.or(cb.greaterThan(value, lastValue), cb.greaterThan(id, lastId)));
+        };
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
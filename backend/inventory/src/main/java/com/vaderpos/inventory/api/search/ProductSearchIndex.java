@@ -0,0 +1,275 @@
+package com.vaderpos.inventory.api.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.IProductService;
+import com.vaderpos.inventory.socket.ChangeBatchListener;
+
+// In-memory trigram index over product names, so name search never scans the table. Every word
+// is padded with two spaces in front and one behind, as pg_trgm does, which lets the leading
+// trigrams answer prefix queries and the rest tolerate typos. Built once the application is up
+// and then kept current by the change coalescer, the same batches the sockets broadcast.
+// Writes are serialized; searches read the concurrent maps without locking.
+@Component
+public class ProductSearchIndex implements ChangeBatchListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    public static final int MAX_RESULTS = 100;
+    // Share of the query's trigrams a name must contain to count as a fuzzy match
+    private static final double MIN_SIMILARITY = 0.3;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // The posting lists hold entries rather than ids, so a candidate costs no further lookup.
+    // Stock and price changes only swap the product; a new name means a new entry.
+    private static final class Entry {
+        private final String name;
+        private final Set<String> trigrams;
+        private volatile ProductDTO product;
+
+        private Entry(ProductDTO product, String name, Set<String> trigrams) {
+            this.product = product;
+            this.name = name;
+            this.trigrams = trigrams;
+        }
+    }
+
+    private record Hit(ProductDTO product, String name, double score) {}
+
+    // Best first: higher score, then the shorter name, then the lower id
+    private static final Comparator<Hit> RANKING = (a, b) ->
+        a == b ? 0 : outranks(a.score(), a.name(), a.product(), b) ? -1 : 1;
+
+    private final IProductService productService;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<Entry>> postings = new ConcurrentHashMap<>();
+    // Deletes seen before the initial build finished, so the build does not bring them back
+    private final Set<Long> removedBeforeBuild = new HashSet<>();
+    private boolean built;
+
+    public ProductSearchIndex(IProductService productService) {
+        this.productService = productService;
+    }
+
+    // Products changed while this runs are already indexed from their newer state and are skipped
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+        List<ProductDTO> products = productService.getAllProducts();
+        synchronized (this) {
+            for (ProductDTO product : products) {
+                if (!entries.containsKey(product.productId()) && !removedBeforeBuild.contains(product.productId())) {
+                    put(product);
+                }
+            }
+            removedBeforeBuild.clear();
+            built = true;
+        }
+        log.info("Indexed {} product names in {} ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public List<ProductDTO> search(String query, Integer categoryId, int limit) {
+        if (query == null) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if (limit <= 0 || limit > MAX_RESULTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_RESULTS);
+        }
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain a letter or digit");
+        }
+        Set<String> grams = trigrams(normalized, true);
+        List<Set<Entry>> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            lists.add(postings.getOrDefault(gram, Collections.emptySet()));
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        // Names with every trigram of the query first, which only walks the shortest list. Typos
+        // are looked for only when nothing matched that way, as the looser match visits far more
+        // names; short queries are pure prefix lookups and never loosen.
+        List<Hit> hits = collect(grams, lists, grams.size(), normalized, categoryId, limit);
+        int fuzzyRequired = Math.max(Math.min(grams.size(), 3), (int) Math.ceil(grams.size() * MIN_SIMILARITY));
+        if (hits.isEmpty() && fuzzyRequired < grams.size()) {
+            hits = collect(grams, lists, fuzzyRequired, normalized, categoryId, limit);
+        }
+
+        List<ProductDTO> results = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            results.add(hit.product());
+        }
+        return results;
+    }
+
+    // A name sharing at least required trigrams with the query is in one of the n - required + 1
+    // shortest posting lists, so only those are walked and each candidate is counted against its
+    // own trigrams
+    private List<Hit> collect(Set<String> grams, List<Set<Entry>> lists, int required, String query,
+                              Integer categoryId, int limit) {
+        List<Set<Entry>> walked = lists.subList(0, grams.size() - required + 1);
+        Set<Entry> seen = walked.size() > 1 ? new HashSet<>() : null;
+        String wordStart = " " + query;
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Set<Entry> candidates : walked) {
+            for (Entry entry : candidates) {
+                if (seen != null && !seen.add(entry)) {
+                    continue;
+                }
+                ProductDTO product = entry.product;
+                if (categoryId != null && product.categoryId() != categoryId) {
+                    continue;
+                }
+                int shared = 0;
+                for (String gram : grams) {
+                    if (entry.trigrams.contains(gram)) {
+                        shared++;
+                    }
+                }
+                if (shared < required) {
+                    continue;
+                }
+                double score = score(entry.name, query, wordStart, shared, grams.size());
+                // The head is the worst of the best so far; most candidates lose to it and are
+                // dropped before anything is allocated for them
+                if (top.size() < limit) {
+                    top.add(new Hit(product, entry.name, score));
+                } else if (outranks(score, entry.name, product, top.peek())) {
+                    top.poll();
+                    top.add(new Hit(product, entry.name, score));
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(RANKING);
+        return hits;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Runs on the coalescer thread. A product that is gone by the time it was read was deleted
+    // in the meantime; its delete follows in a later batch, but it can leave the index now.
+    @Override
+    public void onChangeBatch(Set<Long> productIds, Set<Integer> categoryIds, Map<Long, ProductDTO> products) {
+        for (Long productId : productIds) {
+            ProductDTO product = products.get(productId);
+            if (product != null) {
+                put(product);
+            } else {
+                remove(productId);
+            }
+        }
+    }
+
+    @Override
+    public void onDeletes(Set<Long> productIds, Set<Integer> categoryIds) {
+        productIds.forEach(this::remove);
+    }
+
+    synchronized void put(ProductDTO product) {
+        String name = normalize(product.productName());
+        Entry previous = entries.get(product.productId());
+        // Stock and price changes are most of the traffic and leave the trigrams as they are
+        if (previous != null && previous.name.equals(name)) {
+            previous.product = product;
+            return;
+        }
+        Entry entry = new Entry(product, name, new HashSet<>(trigrams(name, false)));
+        for (String gram : entry.trigrams) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(entry);
+        }
+        entries.put(product.productId(), entry);
+        if (previous != null) {
+            unpost(previous);
+        }
+    }
+
+    synchronized void remove(Long productId) {
+        if (!built) {
+            removedBeforeBuild.add(productId);
+        }
+        Entry previous = entries.remove(productId);
+        if (previous != null) {
+            unpost(previous);
+        }
+    }
+
+    private void unpost(Entry entry) {
+        for (String gram : entry.trigrams) {
+            postings.computeIfPresent(gram, (key, posted) -> {
+                posted.remove(entry);
+                return posted.isEmpty() ? null : posted;
+            });
+        }
+    }
+
+    // Ids are unique, so two different hits never tie
+    private static boolean outranks(double score, String name, ProductDTO product, Hit other) {
+        if (score != other.score()) {
+            return score > other.score();
+        }
+        if (name.length() != other.name().length()) {
+            return name.length() < other.name().length();
+        }
+        return product.productId() < other.product().productId();
+    }
+
+    // Share of the query found in the name, plus a bonus when the name starts with the query
+    // or has a word that does
+    private static double score(String name, String query, String wordStart, int shared, int queryGrams) {
+        double score = shared / (double) queryGrams;
+        if (name.startsWith(query)) {
+            score += 1.0;
+        } else if (name.contains(wordStart)) {
+            score += 0.5;
+        }
+        return score;
+    }
+
+    // Lower case, accents dropped, anything other than letters and digits as single spaces
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // The last word of a query is left open at the end so it matches as a prefix
+    static Set<String> trigrams(String normalized, boolean query) {
+        if (normalized.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String[] words = normalized.split(" ");
+        Set<String> grams = new LinkedHashSet<>();
+        for (int w = 0; w < words.length; w++) {
+            String padded = "  " + words[w] + (query && w == words.length - 1 ? "" : " ");
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,29 @@
+package com.vaderpos.inventory.api.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Change notifications must not go out before the write is visible to other readers, or a
+// client (or the cache) can reload the old row. Inside a transaction they are held back until
+// it commits and dropped on rollback; outside one the write has already committed.
+// The services' notifyChange runs every write's cache invalidation and catalog version bump
+// (in that order, see CatalogVersion) through here. Socket clients hear about the change
+// separately, through the outbox row the database records with the write.
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
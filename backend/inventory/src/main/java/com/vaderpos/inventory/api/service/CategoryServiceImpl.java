@@ -1,48 +1,93 @@
 package com.vaderpos.inventory.api.service;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import com.vaderpos.inventory.api.cache.CatalogCache;
+import com.vaderpos.inventory.api.cache.CatalogVersion;
 import com.vaderpos.inventory.api.model.ProductCategory;
 import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
 import com.vaderpos.inventory.api.repository.ICategoryRepository;
 import com.vaderpos.inventory.exception.CategoryNotFoundException;
-import com.vaderpos.inventory.socket.ChangeListener;
 
 import com.vaderpos.inventory.api.repository.IProductRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Service
 public class CategoryServiceImpl implements ICategoryService{
     
     private final ICategoryRepository categoryRepository;
     private final IProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogCache<Integer, CategoryDTO> categoryCache;
+    private final CatalogVersion catalogVersion;
 
-    private ChangeListener changeListener;
-
-    public void setChangeListener(ChangeListener listener){
-        this.changeListener = listener;
+    // Every write ends up here; see AfterCommit
+    private void notifyChange(Integer categoryId) {
+        AfterCommit.run(() -> evictCategory(categoryId));
     }
 
-
-    private void notifyChange(Integer categoryId) {
-        if (changeListener != null) {
-            changeListener.onCategoryChanged(categoryId);
-        }
+    @Override
+    public void evictCategory(Integer categoryId) {
+        categoryCache.invalidate(categoryId);
+        catalogVersion.categoryChanged(categoryId);
     }
 
-    public CategoryServiceImpl(ICategoryRepository categoryRepository, IProductRepository productRepository) {
+    public CategoryServiceImpl(ICategoryRepository categoryRepository, IProductRepository productRepository,
+                               TransactionTemplate transactionTemplate, CatalogVersion catalogVersion,
+                               MeterRegistry meterRegistry) {
         this.categoryRepository = categoryRepository;
         this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.catalogVersion = catalogVersion;
+        this.categoryCache = new CatalogCache<>("categories", CategoryDTO::categoryId, meterRegistry);
     }
 
     @Override
     public List<CategoryDTO> getAllCategories() {
-        return categoryRepository.findAll().stream()
-        .map(this::convertToDTO)
-        .collect(Collectors.toList());
+        return categoryCache.getAll(
+            () -> categoryRepository.findAll().stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList()),
+            ids -> categoryRepository.findAllById(ids).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public CursorPageDTO<CategoryDTO> getCategoryPage(String namePrefix, String cursor, int limit) {
+        if (limit <= 0 || limit > ProductServiceImpl.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + ProductServiceImpl.MAX_PAGE_SIZE);
+        }
+        int lastId = Integer.MIN_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                lastId = Integer.parseInt(PageCursor.decode(cursor, "categoryId,asc")[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        // One extra row tells whether there is a next page without a count query
+        Limit fetch = Limit.of(limit + 1);
+        List<ProductCategory> rows = namePrefix == null || namePrefix.isBlank()
+            ? categoryRepository.findByCategoryIdGreaterThanOrderByCategoryIdAsc(lastId, fetch)
+            : categoryRepository.findByCategoryIdGreaterThanAndCategoryNameStartingWithIgnoreCaseOrderByCategoryIdAsc(
+                lastId, namePrefix, fetch);
+
+        boolean hasMore = rows.size() > limit;
+        List<ProductCategory> page = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore
+            ? PageCursor.encode("categoryId,asc", "", page.get(page.size() - 1).getCategoryId())
+            : null;
+        return new CursorPageDTO<>(page.stream().map(this::convertToDTO).collect(Collectors.toList()), nextCursor);
     }
 
     @Override
@@ -50,8 +95,7 @@ public class CategoryServiceImpl implements ICategoryService{
         if (id == null) {
             return Optional.empty();
         }
-        return categoryRepository.findById(id)
-                .map(this::convertToDTO);
+        return categoryCache.get(id, key -> categoryRepository.findById(key).map(this::convertToDTO));
     }
 
 @Override
@@ -94,14 +138,19 @@ public CategoryDTO createCategory(CategoryDTO categoryDTO) {
             throw new IllegalArgumentException("Category id cannot be null");
         }
 
-        long productCount = productRepository.countByCategoryId(id);
-        if (productCount > 0) {
-            throw new IllegalStateException(
-                "Cannot delete category. It has " + productCount + " products associated with it."
-            );
-        }
-        notifyChange(id);
-        categoryRepository.deleteById(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            long productCount = productRepository.countByCategoryId(id);
+            if (productCount > 0) {
+                throw new IllegalStateException(
+                    "Cannot delete category. It has " + productCount + " products associated with it."
+                );
+            }
+            // deleteById ignores missing ids; only announce deletes that actually happened
+            if (categoryRepository.existsById(id)) {
+                categoryRepository.deleteById(id);
+                notifyChange(id);
+            }
+        });
     }
 
     private CategoryDTO convertToDTO(ProductCategory productCategory) {
@@ -1,13 +1,17 @@
 package com.vaderpos.inventory.api.service;
 
 import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
 import java.util.List;
 import java.util.Optional;
 
 public interface ICategoryService {
     List<CategoryDTO> getAllCategories();
     Optional<CategoryDTO> getCategory(Integer id);
+    CursorPageDTO<CategoryDTO> getCategoryPage(String namePrefix, String cursor, int limit);
     CategoryDTO createCategory(CategoryDTO categoryDTO);
     CategoryDTO updateCategory(Integer id, CategoryDTO categoryDTO);
     void deleteCategory(Integer id);
+    // Drops the cached copy of a category another instance changed
+    void evictCategory(Integer id);
 }
@@ -1,18 +1,42 @@
 package com.vaderpos.inventory.api.service;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.Iterator;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
+import com.vaderpos.inventory.api.dto.ImportReportDTO;
 import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductQueryDTO;
 import com.vaderpos.inventory.api.dto.ProductUpdateDTO;
+import com.vaderpos.inventory.api.dto.StockChangeDTO;
+import com.vaderpos.inventory.api.dto.StockLevelDTO;
 
 public interface IProductService {
     List<ProductDTO> getAllProducts();
+    List<ProductDTO> getProducts(List<Long> ids);
+    // cursor is null for the first page, then the nextCursor of the previous one
+    CursorPageDTO<ProductDTO> getProductPage(ProductQueryDTO query, String cursor, int limit);
+    // Hands every product (changed after updatedAfter, if given) to the consumer in id order,
+    // one row at a time without loading the catalog
+    void exportProducts(Instant updatedAfter, Consumer<ProductDTO> consumer);
+    // Creates every product read from rows in one transaction; any invalid row rolls back the
+    // whole import. Product ids in the rows are ignored.
+    ImportReportDTO importProducts(Iterator<ProductDTO> rows);
     Optional<ProductDTO> getProduct(Long id);
     ProductDTO createProduct(ProductDTO productDTO);
     ProductDTO updateProduct(Long id, ProductUpdateDTO productUpdateDTO);
     void deleteProduct(Long id);
+    // Drops cached copies of products another instance changed
+    void evictProducts(List<Long> productIds);
 
     int checkProductStock(Long id);
-    void reduceProductStock(Long id, int quantity);
-    void returnProductStock(Long id, int quantity);
+    // Both return the stock left after the change
+    int reduceProductStock(Long id, int quantity);
+    int returnProductStock(Long id, int quantity);
+
+    // All-or-nothing: either every line is applied or none is
+    List<StockLevelDTO> reduceProductStocks(List<StockChangeDTO> items);
+    List<StockLevelDTO> returnProductStocks(List<StockChangeDTO> items);
 }
@@ -0,0 +1,16 @@
+package com.vaderpos.inventory.api.service;
+
+import com.vaderpos.inventory.api.dto.ReservationDTO;
+
+public interface IReservationService {
+    // ttlSeconds may be null to use the configured default
+    ReservationDTO holdProduct(Long productId, int quantity, Long ttlSeconds);
+    // Takes the held stock for real and returns the stock left
+    int confirmHold(String reservationId);
+    ReservationDTO releaseHold(String reservationId);
+
+    int getHeldStock(Long productId);
+    int getAvailableStock(Long productId);
+
+    int releaseExpiredHolds();
+}
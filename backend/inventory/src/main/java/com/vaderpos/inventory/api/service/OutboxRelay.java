@@ -0,0 +1,111 @@
+package com.vaderpos.inventory.api.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vaderpos.inventory.api.model.OutboxEvent;
+import com.vaderpos.inventory.api.repository.IOutboxRepository;
+import com.vaderpos.inventory.socket.ChangeListener;
+
+// Publishes the change events the database recorded in inventory_outbox to the ChangeListener,
+// oldest first. An event is only marked published in the transaction that hands it over, so a
+// listener that throws gets the same events again on the next run instead of losing them.
+@Service
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final IOutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retention;
+
+    private ChangeListener changeListener;
+
+    public OutboxRelay(IOutboxRepository outboxRepository, TransactionTemplate transactionTemplate,
+                       @Value("${inventory.outbox.batch-size:500}") int batchSize,
+                       @Value("${inventory.outbox.retention-hours:24}") long retentionHours) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    public void setChangeListener(ChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    // Drains everything that is waiting, one batch per transaction. Returns how many events were published.
+    @Scheduled(fixedDelayString = "${inventory.outbox.poll-interval-ms:50}",
+               initialDelayString = "${inventory.outbox.poll-interval-ms:50}")
+    public int relay() {
+        if (changeListener == null) {
+            return 0;
+        }
+        int published = 0;
+        int claimed;
+        do {
+            claimed = transactionTemplate.execute(status -> {
+                List<Object[]> rows = new ArrayList<>(outboxRepository.claimUnpublished(batchSize));
+                rows.sort(Comparator.comparingLong(row -> ((Number) row[0]).longValue()));
+                publish(rows);
+                return rows.size();
+            });
+            published += claimed;
+        } while (claimed == batchSize);
+        return published;
+    }
+
+    // Published events older than the retention are deleted; the rest stay as change history
+    @Scheduled(fixedDelayString = "${inventory.outbox.cleanup-interval-ms:3600000}")
+    public int deleteExpired() {
+        int deleted = outboxRepository.deletePublishedBefore(Instant.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Deleted {} published outbox events", deleted);
+        }
+        return deleted;
+    }
+
+    // Runs of product changes go out as one call; the order between runs and deletes is kept
+    private void publish(List<Object[]> rows) {
+        Set<Long> changedProducts = new LinkedHashSet<>();
+        for (Object[] row : rows) {
+            String entity = (String) row[1];
+            long entityId = ((Number) row[2]).longValue();
+            boolean deleted = (Boolean) row[3];
+
+            if (entity.equals(OutboxEvent.PRODUCT) && !deleted) {
+                changedProducts.add(entityId);
+                continue;
+            }
+            flushProducts(changedProducts);
+            if (entity.equals(OutboxEvent.PRODUCT)) {
+                changeListener.onProductDeleted(entityId);
+            } else if (deleted) {
+                changeListener.onCategoryDeleted((int) entityId);
+            } else {
+                changeListener.onCategoryChanged((int) entityId);
+            }
+        }
+        flushProducts(changedProducts);
+    }
+
+    private void flushProducts(Set<Long> changedProducts) {
+        if (!changedProducts.isEmpty()) {
+            changeListener.onProductsChanged(new ArrayList<>(changedProducts));
+            changedProducts.clear();
+        }
+    }
+}
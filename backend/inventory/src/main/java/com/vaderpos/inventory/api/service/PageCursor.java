@@ -0,0 +1,34 @@
+package com.vaderpos.inventory.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque cursors for keyset pagination. A cursor records how the listing was ordered and the
+// position of the last row returned; it is only valid for a listing in that same order.
+final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    static String encode(String order, String value, Object lastId) {
+        String raw = order + "\n" + value + "\n" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns {value, lastId}
+    static String[] decode(String cursor, String order) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!parts[0].equals(order)) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort order");
+        }
+        return new String[] { parts[1], parts[2] };
+    }
+}
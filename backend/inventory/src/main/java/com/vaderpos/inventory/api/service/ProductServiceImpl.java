@@ -2,53 +2,272 @@ package com.vaderpos.inventory.api.service;
 
 import java.util.stream.Collectors;
 
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.vaderpos.inventory.api.cache.CatalogCache;
+import com.vaderpos.inventory.api.cache.CatalogVersion;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
+import com.vaderpos.inventory.api.dto.ImportReportDTO;
 import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductQueryDTO;
 import com.vaderpos.inventory.api.dto.ProductUpdateDTO;
+import com.vaderpos.inventory.api.dto.StockChangeDTO;
+import com.vaderpos.inventory.api.dto.StockLevelDTO;
 import com.vaderpos.inventory.api.repository.IProductRepository;
+import com.vaderpos.inventory.api.repository.ProductSpecifications;
 import com.vaderpos.inventory.exception.InsufficientStockException;
 import com.vaderpos.inventory.exception.CategoryNotFoundException;
 import com.vaderpos.inventory.exception.ProductNotFoundException;
 import com.vaderpos.inventory.api.repository.ICategoryRepository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.math.BigDecimal;
+import java.time.Instant;
 import com.vaderpos.inventory.api.model.Product;
-import com.vaderpos.inventory.socket.ChangeListener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 
 
 @Service
 public class ProductServiceImpl implements IProductService {
 
+    private static final Logger log = LoggerFactory.getLogger(ProductServiceImpl.class);
+
     private final IProductRepository productRepository;
     private final ICategoryRepository categoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final EntityManager entityManager;
+    private final CatalogCache<Long, ProductDTO> productCache;
+    private final CatalogVersion catalogVersion;
+    private final StockHolds stockHolds;
+    private final int importBatchSize;
+    private final Counter takeRejections;
+    private final Counter batchTakeRejections;
 
-    public ProductServiceImpl(IProductRepository productRepository, ICategoryRepository categoryRepository) {
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    public ProductServiceImpl(IProductRepository productRepository, ICategoryRepository categoryRepository,
+                              TransactionTemplate transactionTemplate, EntityManager entityManager,
+                              CatalogVersion catalogVersion, StockHolds stockHolds, MeterRegistry meterRegistry,
+                              @Value("${inventory.import.batch-size:500}") int importBatchSize) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.entityManager = entityManager;
+        this.productCache = new CatalogCache<>("products", ProductDTO::productId, meterRegistry);
+        this.takeRejections = stockRejections(meterRegistry, "take");
+        this.batchTakeRejections = stockRejections(meterRegistry, "takeBatch");
+        this.catalogVersion = catalogVersion;
+        this.stockHolds = stockHolds;
+        this.importBatchSize = importBatchSize;
     }
 
-    private ChangeListener changeListener;
+    // Every write ends up here; see AfterCommit
+    private void notifyChange(Long productId) {
+        notifyChanges(List.of(productId));
+    }
+
+    private void notifyChanges(List<Long> productIds) {
+        AfterCommit.run(() -> evictProducts(productIds));
+    }
 
-    public void setChangeListener(ChangeListener listener){
-        this.changeListener = listener;
+    @Override
+    public void evictProducts(List<Long> productIds) {
+        productCache.invalidateAll(productIds);
+        catalogVersion.productsChanged(productIds);
     }
 
 
-    private void notifyChange(Long productId) {
-        if (changeListener != null) {
-            changeListener.onProductChanged(productId);
+    @Override
+    public List<ProductDTO> getAllProducts() {
+        return productCache.getAll(
+            () -> productRepository.findAll().stream()
+                .map(ProductServiceImpl::convertToDTO)
+                .collect(Collectors.toList()),
+            ids -> productRepository.findAllById(ids).stream()
+                .map(ProductServiceImpl::convertToDTO)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<ProductDTO> getProducts(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
         }
+        return productCache.getMany(ids, missing -> productRepository.findAllById(missing).stream()
+            .map(ProductServiceImpl::convertToDTO)
+            .collect(Collectors.toList()));
     }
 
+    // Served straight from the database: filtered pages are not worth caching, and the
+    // indexes from V2__Listing_indexes keep every page a short index range scan
+    @Override
+    public CursorPageDTO<ProductDTO> getProductPage(ProductQueryDTO query, String cursor, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        String sortBy = query.sortBy() == null ? "productId" : query.sortBy();
+        if (!List.of("productId", "price", "quantity").contains(sortBy)) {
+            throw new IllegalArgumentException("Cannot sort products by " + sortBy);
+        }
+        String direction = query.direction() == null ? "asc" : query.direction().toLowerCase();
+        if (!direction.equals("asc") && !direction.equals("desc")) {
+            throw new IllegalArgumentException("Sort direction must be asc or desc");
+        }
+        boolean descending = direction.equals("desc");
+        String order = sortBy + "," + direction;
+
+        Specification<Product> spec = ProductSpecifications.matching(
+            query.categoryId(), query.namePrefix(), query.minStock(), query.maxStock());
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] position = PageCursor.decode(cursor, order);
+            try {
+                Long lastId = Long.valueOf(position[1]);
+                spec = spec.and(switch (sortBy) {
+                    case "price" -> ProductSpecifications.after("price", new BigDecimal(position[0]), lastId, descending);
+                    case "quantity" -> ProductSpecifications.after("quantity", Integer.valueOf(position[0]), lastId, descending);
+                    default -> ProductSpecifications.afterId(lastId, descending);
+                });
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
 
+        // Ties on the sort column are broken by id so the order, and with it the cursor, is total
+        Sort.Direction sortDirection = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = sortBy.equals("productId")
+            ? Sort.by(sortDirection, "productId")
+            : Sort.by(sortDirection, sortBy, "productId");
+        // One extra row tells whether there is a next page without a count query
+        List<Product> rows = productRepository.findBy(spec, q -> q.sortBy(sort).limit(limit + 1).all());
+
+        boolean hasMore = rows.size() > limit;
+        List<Product> page = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Product last = page.get(page.size() - 1);
+            String value = switch (sortBy) {
+                case "price" -> last.getPrice().toPlainString();
+                case "quantity" -> String.valueOf(last.getQuantity());
+                default -> "";
+            };
+            nextCursor = PageCursor.encode(order, value, last.getProductId());
+        }
+        return new CursorPageDTO<>(page.stream().map(ProductServiceImpl::convertToDTO).collect(Collectors.toList()), nextCursor);
+    }
+
+    // Postgres only streams with a fetch size inside a transaction, so the whole export runs in
+    // one read-only transaction. Rows are detached as soon as they are handed over, which keeps
+    // the persistence context, and with it the heap, from growing with the catalog.
     @Override
-    public List<ProductDTO> getAllProducts() {
-        return productRepository.findAll().stream()
-            .map(this::convertToDTO)
-            .collect(Collectors.toList());
+    public void exportProducts(Instant updatedAfter, Consumer<ProductDTO> consumer) {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Product> rows = updatedAfter == null
+                    ? productRepository.streamAll()
+                    : productRepository.streamUpdatedAfter(updatedAfter)) {
+                rows.forEach(product -> {
+                    consumer.accept(convertToDTO(product));
+                    entityManager.detach(product);
+                });
+            }
+        });
+    }
+
+    // Inserts go out as JDBC batches of importBatchSize, with ids drawn from the pooled sequence
+    // so Hibernate never needs a round trip per row. The persistence context is flushed and
+    // cleared after every batch to keep memory flat however large the import is.
+    @Override
+    public ImportReportDTO importProducts(Iterator<ProductDTO> rows) {
+        if (rows == null) {
+            throw new IllegalArgumentException("Import rows cannot be null");
+        }
+        long start = System.nanoTime();
+        List<Long> ids = transactionTemplate.execute(status -> {
+            Set<Integer> categoryIds = new HashSet<>(categoryRepository.findAllIds());
+            Session session = entityManager.unwrap(Session.class);
+            session.setJdbcBatchSize(importBatchSize);
+
+            List<Long> created = new ArrayList<>();
+            List<Product> pending = new ArrayList<>(importBatchSize);
+            int row = 0;
+            while (rows.hasNext()) {
+                row++;
+                ProductDTO productDTO = rows.next();
+                validateImportRow(row, productDTO, categoryIds);
+                Product product = convertToEntity(productDTO);
+                entityManager.persist(product);
+                pending.add(product);
+                if (pending.size() == importBatchSize) {
+                    flushImportBatch(pending, created);
+                }
+            }
+            flushImportBatch(pending, created);
+            return created;
+        });
+        long elapsedNanos = System.nanoTime() - start;
+
+        // One cache invalidation for the whole import; the outbox relay publishes its rows in batches
+        if (!ids.isEmpty()) {
+            notifyChanges(ids);
+        }
+        double rowsPerSecond = elapsedNanos == 0 ? 0 : ids.size() * 1_000_000_000.0 / elapsedNanos;
+        log.info("Imported {} products in {} ms ({} rows/s)", ids.size(), elapsedNanos / 1_000_000, Math.round(rowsPerSecond));
+        return new ImportReportDTO(ids.size(), elapsedNanos / 1_000_000, rowsPerSecond);
+    }
+
+    private void validateImportRow(int row, ProductDTO productDTO, Set<Integer> categoryIds) {
+        if (productDTO == null) {
+            throw new IllegalArgumentException("Row " + row + ": product cannot be null");
+        }
+        if (productDTO.productName() == null || productDTO.productName().isBlank()) {
+            throw new IllegalArgumentException("Row " + row + ": product name is required");
+        }
+        if (productDTO.productName().length() > 100) {
+            throw new IllegalArgumentException("Row " + row + ": product name is longer than 100 characters");
+        }
+        if (productDTO.quantity() < 0) {
+            throw new IllegalArgumentException("Row " + row + ": quantity cannot be negative");
+        }
+        if (productDTO.price() < 0) {
+            throw new IllegalArgumentException("Row " + row + ": price cannot be negative");
+        }
+        if (!categoryIds.contains(productDTO.categoryId())) {
+            throw new IllegalArgumentException("Row " + row + ": category " + productDTO.categoryId() + " does not exist");
+        }
+    }
+
+    private void flushImportBatch(List<Product> pending, List<Long> created) {
+        entityManager.flush();
+        for (Product product : pending) {
+            created.add(product.getProductId());
+        }
+        pending.clear();
+        entityManager.clear();
     }
 
     @Override
@@ -56,8 +275,7 @@ public class ProductServiceImpl implements IProductService {
         if (id == null) {
             return Optional.empty();
         }
-        return productRepository.findById(id)
-            .map(this::convertToDTO);
+        return productCache.get(id, key -> productRepository.findById(key).map(ProductServiceImpl::convertToDTO));
     }
 
     // @Override
@@ -85,40 +303,71 @@ public class ProductServiceImpl implements IProductService {
         return convertToDTO(savedProduct);
     }
 
+    // Read-modify-write guarded by Product's @Version. When the caller names a version, a
+    // conflict means they edited a stale copy and is reported as such; otherwise the update only
+    // lost a race (typically with a stock change) and is re-applied to a fresh read. A row that
+    // keeps changing could starve the retries, so the last attempt locks it instead.
     @Override
     public ProductDTO updateProduct(Long id, ProductUpdateDTO productUpdateDTO) {
         if (id == null) {
             throw new IllegalArgumentException("Product id cannot be null");
         }
-        // add category check later
-        Optional<Product> existingProductOpt = productRepository.findById(id);
-        if (existingProductOpt.isPresent()) {
-            Product existingProduct = existingProductOpt.get();
-
-            if (productUpdateDTO.productName() != null){
-                existingProduct.setProductName(productUpdateDTO.productName());
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            boolean lock = attempt == MAX_UPDATE_ATTEMPTS;
+            try {
+                return transactionTemplate.execute(status -> applyUpdate(id, productUpdateDTO, lock));
+            } catch (OptimisticLockingFailureException e) {
+                if (productUpdateDTO.version() != null) {
+                    throw new IllegalStateException("Product " + id + " was changed by someone else, reload it and try again");
+                }
+                if (!lock) {
+                    backOff(attempt);
+                }
             }
+        }
+        throw new IllegalStateException("Product " + id + " kept changing while it was updated, try again");
+    }
 
-            if (productUpdateDTO.quantity() != null){
-                existingProduct.setQuantity(productUpdateDTO.quantity());
-            }
+    private ProductDTO applyUpdate(Long id, ProductUpdateDTO productUpdateDTO, boolean lock) {
+        Product existingProduct = (lock ? productRepository.findByIdForUpdate(id) : productRepository.findById(id))
+            .orElseThrow(() -> new ProductNotFoundException(id));
+        if (productUpdateDTO.version() != null && !productUpdateDTO.version().equals(existingProduct.getVersion())) {
+            throw new IllegalStateException("Product " + id + " is at version " + existingProduct.getVersion()
+                + ", not " + productUpdateDTO.version());
+        }
 
-            if (productUpdateDTO.categoryId() != null){
-                if(categoryRepository.findById(productUpdateDTO.categoryId()).isEmpty()){
-                    throw new CategoryNotFoundException(productUpdateDTO.categoryId());
-                }
-                existingProduct.setCategoryId(productUpdateDTO.categoryId());
-            }
+        if (productUpdateDTO.productName() != null){
+            existingProduct.setProductName(productUpdateDTO.productName());
+        }
+
+        if (productUpdateDTO.quantity() != null){
+            existingProduct.setQuantity(productUpdateDTO.quantity());
+        }
 
-            if (productUpdateDTO.price() != null){
-                existingProduct.setPrice(BigDecimal.valueOf(productUpdateDTO.price()));
+        if (productUpdateDTO.categoryId() != null){
+            if(categoryRepository.findById(productUpdateDTO.categoryId()).isEmpty()){
+                throw new CategoryNotFoundException(productUpdateDTO.categoryId());
             }
+            existingProduct.setCategoryId(productUpdateDTO.categoryId());
+        }
 
-            Product updatedProduct = productRepository.save(existingProduct);
-            notifyChange(updatedProduct.getProductId());
-            return convertToDTO(updatedProduct);
-        } else {
-            throw new ProductNotFoundException(id);
+        if (productUpdateDTO.price() != null){
+            existingProduct.setPrice(BigDecimal.valueOf(productUpdateDTO.price()));
+        }
+
+        // Flushing here runs the version check now and returns the new version
+        Product updatedProduct = productRepository.saveAndFlush(existingProduct);
+        notifyChange(updatedProduct.getProductId());
+        return convertToDTO(updatedProduct);
+    }
+
+    // Randomised so racing updaters do not collide again in lockstep
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a product update");
         }
     }
 
@@ -127,8 +376,13 @@ public class ProductServiceImpl implements IProductService {
         if (id == null) {
             throw new IllegalArgumentException("Product id cannot be null");
         }
-        notifyChange(id);
-        productRepository.deleteById(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            // deleteById ignores missing ids; only announce deletes that actually happened
+            if (productRepository.existsById(id)) {
+                productRepository.deleteById(id);
+                notifyChange(id);
+            }
+        });
     }
 
     @Override
@@ -136,56 +390,170 @@ public class ProductServiceImpl implements IProductService {
         if (id == null) {
             throw new IllegalArgumentException("Product id cannot be null");
         }
-        Optional<Product> productOpt = productRepository.findById(id);
-        if (productOpt.isPresent()) {
-            return productOpt.get().getQuantity();
-        } else {
-            throw new ProductNotFoundException(id);
-        }
+        return getProduct(id)
+            .map(ProductDTO::quantity)
+            .orElseThrow(() -> new ProductNotFoundException(id));
     }
 
     @Override
-    public void reduceProductStock(Long id, int quantity) {
+    public int reduceProductStock(Long id, int quantity) {
         if (id == null) {
             throw new IllegalArgumentException("Product id cannot be null");
         }
-        Optional<Product> productOpt = productRepository.findById(id);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            if (product.getQuantity() >= quantity){
-                product.setQuantity(product.getQuantity() - quantity);
-                productRepository.save(product);
-                notifyChange(product.getProductId());
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        // Check and decrement happen in a single statement, so there is no window
+        // between reading the stock and writing it back for another till to slip into.
+        // Held units are off limits, and no hold can be placed until the take is done.
+        return stockHolds.locked(List.of(id), () -> {
+            int held = stockHolds.held(id);
+            Optional<Integer> remainingOpt = productRepository.decrementStock(id, quantity, held);
+            if (remainingOpt.isPresent()) {
+                notifyChange(id);
+                return remainingOpt.get();
+            }
+            // Nothing was updated; only now pay for a read to report why
+            Optional<Integer> availableOpt = productRepository.findQuantityById(id);
+            if (availableOpt.isPresent()) {
+                takeRejections.increment();
+                throw new InsufficientStockException(id, quantity, Math.max(availableOpt.get() - held, 0));
             } else {
-                throw new InsufficientStockException(id, quantity, product.getQuantity());
+                throw new ProductNotFoundException(id);
             }
-        }else{
-            throw new ProductNotFoundException(id);
-        }
+        });
     }
 
-    public void returnProductStock(Long id, int quantity) {
+    @Override
+    public int returnProductStock(Long id, int quantity) {
         if (id == null) {
             throw new IllegalArgumentException("Product id cannot be null");
         }
-        Optional<Product> productOpt = productRepository.findById(id);
-        if (productOpt.isPresent()){
-            Product product = productOpt.get();
-            product.setQuantity(product.getQuantity() + quantity);
-            productRepository.save(product);
-            notifyChange(product.getProductId());
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        Optional<Integer> remainingOpt = productRepository.incrementStock(id, quantity);
+        if (remainingOpt.isPresent()) {
+            notifyChange(id);
+            return remainingOpt.get();
         } else {
             throw new ProductNotFoundException(id);
         }
     }
 
-    private ProductDTO convertToDTO(Product product) {
+    @Override
+    public List<StockLevelDTO> reduceProductStocks(List<StockChangeDTO> items) {
+        return applyStockBatch(items, true);
+    }
+
+    @Override
+    public List<StockLevelDTO> returnProductStocks(List<StockChangeDTO> items) {
+        return applyStockBatch(items, false);
+    }
+
+    // Applies every line in one transaction with a single UPDATE, after locking the rows in id
+    // order so overlapping baskets cannot deadlock; if any line fails the whole basket is rolled
+    // back. Listeners get one notification once the batch commits.
+    private List<StockLevelDTO> applyStockBatch(List<StockChangeDTO> items, boolean reduce) {
+        Map<Long, Integer> lines = mergeStockLines(items);
+        Long[] ids = lines.keySet().toArray(new Long[0]);
+        Integer[] quantities = lines.values().toArray(new Integer[0]);
+
+        // Takes leave held units alone, as reduceProductStock does; returns only add stock
+        List<StockLevelDTO> levels = reduce
+            ? stockHolds.locked(lines.keySet(), () -> writeStockBatch(lines, ids, quantities, true))
+            : writeStockBatch(lines, ids, quantities, false);
+
+        notifyChanges(List.of(ids));
+        return levels;
+    }
+
+    private List<StockLevelDTO> writeStockBatch(Map<Long, Integer> lines, Long[] ids, Integer[] quantities, boolean reduce) {
+        return transactionTemplate.execute(status -> {
+            productRepository.lockInIdOrder(ids);
+            List<Object[]> rows = reduce
+                ? productRepository.decrementStocks(ids, quantities, helds(ids))
+                : productRepository.incrementStocks(ids, quantities);
+
+            Map<Long, Integer> remaining = new HashMap<>();
+            for (Object[] row : rows) {
+                remaining.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+            }
+            if (remaining.size() < lines.size()) {
+                // Throwing rolls back the lines that did succeed
+                throw stockBatchFailure(lines, remaining);
+            }
+
+            List<StockLevelDTO> result = new ArrayList<>(lines.size());
+            for (Long id : lines.keySet()) {
+                result.add(new StockLevelDTO(id, remaining.get(id)));
+            }
+            return result;
+        });
+    }
+
+    private Integer[] helds(Long[] ids) {
+        Integer[] helds = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            helds[i] = stockHolds.held(ids[i]);
+        }
+        return helds;
+    }
+
+    // Validates the lines and sums quantities of repeated products, keeping request order
+    private Map<Long, Integer> mergeStockLines(List<StockChangeDTO> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Stock batch must contain at least one item");
+        }
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        for (StockChangeDTO item : items) {
+            if (item == null || item.productId() == null) {
+                throw new IllegalArgumentException("Product id cannot be null");
+            }
+            if (item.quantity() == null || item.quantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than zero");
+            }
+            lines.merge(item.productId(), item.quantity(), Integer::sum);
+        }
+        return lines;
+    }
+
+    private RuntimeException stockBatchFailure(Map<Long, Integer> lines, Map<Long, Integer> updated) {
+        List<Long> failedIds = new ArrayList<>();
+        for (Long id : lines.keySet()) {
+            if (!updated.containsKey(id)) {
+                failedIds.add(id);
+            }
+        }
+        Map<Long, Integer> available = new HashMap<>();
+        for (Object[] row : productRepository.findQuantitiesByIds(failedIds)) {
+            available.put((Long) row[0], (Integer) row[1]);
+        }
+        Long firstFailed = failedIds.get(0);
+        if (!available.containsKey(firstFailed)) {
+            return new ProductNotFoundException(firstFailed);
+        }
+        batchTakeRejections.increment();
+        return new InsufficientStockException(firstFailed, lines.get(firstFailed),
+            Math.max(available.get(firstFailed) - stockHolds.held(firstFailed), 0));
+    }
+
+    static Counter stockRejections(MeterRegistry meterRegistry, String operation) {
+        return Counter.builder("inventory.stock.rejected")
+            .description("Stock requests turned down for insufficient stock")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    // Package-private for ProductMappingBenchmark
+    static ProductDTO convertToDTO(Product product) {
         return new ProductDTO(
             product.getProductId(),
             product.getProductName(),
             product.getQuantity(),
             product.getPrice().doubleValue(),
-            product.getCategoryId()
+            product.getCategoryId(),
+            product.getVersion()
         );
     }
 
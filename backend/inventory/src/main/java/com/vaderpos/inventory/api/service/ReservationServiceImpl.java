@@ -0,0 +1,215 @@
+package com.vaderpos.inventory.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.vaderpos.inventory.api.dto.ReservationDTO;
+import com.vaderpos.inventory.api.repository.IProductRepository;
+import com.vaderpos.inventory.exception.InsufficientStockException;
+import com.vaderpos.inventory.exception.ProductNotFoundException;
+import com.vaderpos.inventory.exception.ReservationNotFoundException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Holds are kept in memory only: placing or releasing one never writes to the database.
+// Stock is taken for real (through IProductService) when a hold is confirmed; until then plain
+// takes leave the held units alone (see StockHolds).
+@Service
+public class ReservationServiceImpl implements IReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationServiceImpl.class);
+
+    private final IProductService productService;
+    private final IProductRepository productRepository;
+    private final StockHolds stockHolds;
+    private final long defaultTtlSeconds;
+    private final long maxTtlSeconds;
+    private final int sweepBatchSize;
+    private final Counter holdRejections;
+
+    // Active holds by reservation id
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    // Ordered by expiry; confirmed or released holds are skipped lazily when drained
+    private final DelayQueue<Reservation> expiryQueue = new DelayQueue<>();
+
+    public ReservationServiceImpl(IProductService productService, IProductRepository productRepository,
+                                  StockHolds stockHolds,
+                                  @Value("${inventory.reservations.ttl-seconds:900}") long defaultTtlSeconds,
+                                  @Value("${inventory.reservations.max-ttl-seconds:3600}") long maxTtlSeconds,
+                                  @Value("${inventory.reservations.sweep-batch-size:500}") int sweepBatchSize,
+                                  MeterRegistry meterRegistry) {
+        this.productService = productService;
+        this.productRepository = productRepository;
+        this.stockHolds = stockHolds;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.sweepBatchSize = sweepBatchSize;
+        this.holdRejections = ProductServiceImpl.stockRejections(meterRegistry, "hold");
+    }
+
+    @Override
+    public ReservationDTO holdProduct(Long productId, int quantity, Long ttlSeconds) {
+        if (productId == null) {
+            throw new IllegalArgumentException("Product id cannot be null");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        long ttl = ttlSeconds == null ? defaultTtlSeconds : ttlSeconds;
+        if (ttl <= 0 || ttl > maxTtlSeconds) {
+            throw new IllegalArgumentException("Hold duration must be between 1 and " + maxTtlSeconds + " seconds");
+        }
+
+        // Under the product's lock neither another hold nor a take can change the stock between
+        // reading it and holding part of it. The read skips the cache, which may lag a take.
+        stockHolds.locked(List.of(productId), () -> {
+            int stock = productRepository.findQuantityById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+            int alreadyHeld = stockHolds.held(productId);
+            if (stock - alreadyHeld < quantity) {
+                holdRejections.increment();
+                throw new InsufficientStockException(productId, quantity, Math.max(stock - alreadyHeld, 0));
+            }
+            stockHolds.hold(productId, quantity);
+            return null;
+        });
+
+        Reservation reservation = new Reservation(UUID.randomUUID().toString(), productId, quantity,
+            System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl));
+        reservations.put(reservation.id, reservation);
+        expiryQueue.add(reservation);
+        return reservation.toDTO();
+    }
+
+    @Override
+    public int confirmHold(String reservationId) {
+        Reservation reservation = claim(reservationId);
+        // The hold is released and its stock taken under one lock, so nobody else can grab it in
+        // between. The take only sees unheld stock, hence the release first. If the take fails
+        // (the product was deleted or its stock edited down) the hold is put back, so the client
+        // can still release it or let it expire.
+        return stockHolds.locked(List.of(reservation.productId), () -> {
+            unhold(reservation);
+            try {
+                return productService.reduceProductStock(reservation.productId, reservation.quantity);
+            } catch (RuntimeException e) {
+                stockHolds.hold(reservation.productId, reservation.quantity);
+                reservations.put(reservation.id, reservation);
+                // The sweeper may have drained it while it was claimed; a second entry is skipped
+                expiryQueue.add(reservation);
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public ReservationDTO releaseHold(String reservationId) {
+        Reservation reservation = claim(reservationId);
+        unhold(reservation);
+        return reservation.toDTO();
+    }
+
+    @Override
+    public int getHeldStock(Long productId) {
+        if (productId == null) {
+            return 0;
+        }
+        return stockHolds.held(productId);
+    }
+
+    @Override
+    public int getAvailableStock(Long productId) {
+        if (productId == null) {
+            throw new IllegalArgumentException("Product id cannot be null");
+        }
+        int stock = productService.checkProductStock(productId);
+        return Math.max(stock - getHeldStock(productId), 0);
+    }
+
+    // Releases at most one batch of expired holds per run so a backlog never stalls the scheduler thread
+    @Override
+    @Scheduled(fixedDelayString = "${inventory.reservations.sweep-interval-ms:5000}")
+    public int releaseExpiredHolds() {
+        List<Reservation> expired = new ArrayList<>();
+        expiryQueue.drainTo(expired, sweepBatchSize);
+
+        int released = 0;
+        for (Reservation reservation : expired) {
+            // Only release holds that are still active; confirmed/released ones were already unheld
+            if (reservations.remove(reservation.id, reservation)) {
+                unhold(reservation);
+                released++;
+            }
+        }
+
+        if (released > 0) {
+            log.info("Released {} expired stock holds", released);
+        }
+        return released;
+    }
+
+    private Reservation claim(String reservationId) {
+        if (reservationId == null) {
+            throw new IllegalArgumentException("Reservation id cannot be null");
+        }
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            throw new ReservationNotFoundException(reservationId);
+        }
+        if (reservation.isExpired()) {
+            // The sweeper has not reached it yet, but it is no longer valid
+            unhold(reservation);
+            throw new ReservationNotFoundException(reservationId);
+        }
+        return reservation;
+    }
+
+    private void unhold(Reservation reservation) {
+        stockHolds.release(reservation.productId, reservation.quantity);
+    }
+
+    private static final class Reservation implements Delayed {
+        private final String id;
+        private final Long productId;
+        private final int quantity;
+        private final long expiresAt;
+
+        private Reservation(String id, Long productId, int quantity, long expiresAt) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        private ReservationDTO toDTO() {
+            return new ReservationDTO(id, productId, quantity, expiresAt);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Reservation) other).expiresAt);
+        }
+    }
+}
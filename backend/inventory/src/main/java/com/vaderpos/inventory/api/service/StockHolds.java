@@ -0,0 +1,71 @@
+package com.vaderpos.inventory.api.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+// Stock held by reservations, shared by the reservation service, which places the holds, and
+// the product service, whose plain takes may only use what is not held. A take and a hold on the
+// same product each run under that product's lock: otherwise a hold could count stock that a
+// take is about to remove, and the hold could no longer be confirmed. Holds live in memory on
+// the instance that placed them, like the reservations themselves.
+@Component
+public class StockHolds {
+
+    // Products share locks by id; a ReentrantLock rather than synchronized, as the database
+    // round trip under it must not pin a virtual thread's carrier
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    // Total quantity held per product; entries are removed once nothing is held
+    private final Map<Long, Integer> heldByProduct = new ConcurrentHashMap<>();
+
+    public StockHolds() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public int held(Long productId) {
+        return heldByProduct.getOrDefault(productId, 0);
+    }
+
+    // Callers hold the product's lock
+    void hold(Long productId, int quantity) {
+        heldByProduct.merge(productId, quantity, Integer::sum);
+    }
+
+    // Needs no lock: stock freed a moment early or late only makes a racing take more cautious
+    void release(Long productId, int quantity) {
+        heldByProduct.computeIfPresent(productId, (id, held) -> {
+            int remaining = held - quantity;
+            return remaining > 0 ? remaining : null;
+        });
+    }
+
+    // Locks are taken in stripe order, so two baskets sharing products cannot deadlock here
+    <T> T locked(Collection<Long> productIds, Supplier<T> action) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Long productId : productIds) {
+            stripes.add(Math.floorMod(productId.hashCode(), STRIPES));
+        }
+        int taken = 0;
+        Integer[] order = stripes.toArray(new Integer[0]);
+        try {
+            for (Integer stripe : order) {
+                locks[stripe].lock();
+                taken++;
+            }
+            return action.get();
+        } finally {
+            for (int i = taken - 1; i >= 0; i--) {
+                locks[order[i]].unlock();
+            }
+        }
+    }
+}
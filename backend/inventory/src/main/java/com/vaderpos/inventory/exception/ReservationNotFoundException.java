@@ -0,0 +1,7 @@
+package com.vaderpos.inventory.exception;
+
+public class ReservationNotFoundException extends RuntimeException {
+    public ReservationNotFoundException(String reservationId) {
+        super("Reservation with id: " + reservationId + " was not found or has expired.");
+    }
+}
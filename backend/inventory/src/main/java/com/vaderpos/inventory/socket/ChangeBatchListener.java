@@ -0,0 +1,33 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+
+// Receives the ids that changed or were deleted since the last flush; either set may be empty.
+// products holds the current row of each changed product, read once per batch for every
+// listener; a changed id missing from it was deleted in the meantime.
+public interface ChangeBatchListener {
+    void onChangeBatch(Set<Long> productIds, Set<Integer> categoryIds, Map<Long, ProductDTO> products);
+    void onDeletes(Set<Long> productIds, Set<Integer> categoryIds);
+
+    // Hands every batch to each listener in turn
+    static ChangeBatchListener of(ChangeBatchListener... listeners) {
+        return new ChangeBatchListener() {
+            @Override
+            public void onChangeBatch(Set<Long> productIds, Set<Integer> categoryIds, Map<Long, ProductDTO> products) {
+                for (ChangeBatchListener listener : listeners) {
+                    listener.onChangeBatch(productIds, categoryIds, products);
+                }
+            }
+
+            @Override
+            public void onDeletes(Set<Long> productIds, Set<Integer> categoryIds) {
+                for (ChangeBatchListener listener : listeners) {
+                    listener.onDeletes(productIds, categoryIds);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.IProductService;
+
+// Sits between the services and the socket handler. Changes only mark ids as dirty; the dirty
+// ids are flushed as one batch once the window elapses or too many have piled up, so a bulk
+// import produces a handful of broadcasts instead of one per row. Flushes run one at a time
+// on a single thread, which also keeps batches in order. The changed products are read once per
+// flush, in bulk, and the same rows go to every listener.
+public class ChangeCoalescer implements ChangeListener, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeCoalescer.class);
+
+    private final ChangeBatchListener target;
+    private final IProductService productService;
+    private final long windowMs;
+    private final int maxBatchSize;
+
+    private final Set<Long> dirtyProducts = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> dirtyCategories = ConcurrentHashMap.newKeySet();
+    private final Set<Long> deletedProducts = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> deletedCategories = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean immediateFlushQueued = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChangeCoalescer(ChangeBatchListener target, IProductService productService, long windowMs, int maxBatchSize) {
+        this.target = target;
+        this.productService = productService;
+        this.windowMs = windowMs;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    // Ids are reused (categories are numbered by the client), so a change after a delete
+    // cancels the pending delete: the batch reads the row and sends a tombstone itself if it
+    // is gone. Removed before marking dirty, so a flush in between cannot send both.
+    @Override
+    public void onProductChanged(Long productId) {
+        deletedProducts.remove(productId);
+        dirtyProducts.add(productId);
+        changed();
+    }
+
+    @Override
+    public void onProductsChanged(List<Long> productIds) {
+        deletedProducts.removeAll(productIds);
+        dirtyProducts.addAll(productIds);
+        changed();
+    }
+
+    @Override
+    public void onCategoryChanged(Integer categoryId) {
+        deletedCategories.remove(categoryId);
+        dirtyCategories.add(categoryId);
+        changed();
+    }
+
+    // A deleted id no longer needs its update
+    @Override
+    public void onProductDeleted(Long productId) {
+        deletedProducts.add(productId);
+        dirtyProducts.remove(productId);
+        changed();
+    }
+
+    @Override
+    public void onCategoryDeleted(Integer categoryId) {
+        deletedCategories.add(categoryId);
+        dirtyCategories.remove(categoryId);
+        changed();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+
+    private void changed() {
+        int pending = dirtyProducts.size() + dirtyCategories.size() + deletedProducts.size() + deletedCategories.size();
+        if (pending >= maxBatchSize) {
+            if (immediateFlushQueued.compareAndSet(false, true)) {
+                scheduler.execute(this::flush);
+            }
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Only runs on the scheduler thread (or directly in tests)
+    void flush() {
+        // Cleared before draining: an id added after this point either gets drained now or
+        // schedules the next flush itself
+        immediateFlushQueued.set(false);
+        flushScheduled.set(false);
+        Set<Integer> categoryIds = drain(dirtyCategories);
+        Set<Long> productIds = drain(dirtyProducts);
+        Set<Long> deletedProductIds = drain(deletedProducts);
+        Set<Integer> deletedCategoryIds = drain(deletedCategories);
+        try {
+            if (!categoryIds.isEmpty() || !productIds.isEmpty()) {
+                Map<Long, ProductDTO> products = new HashMap<>();
+                for (ProductDTO product : productService.getProducts(new ArrayList<>(productIds))) {
+                    products.put(product.productId(), product);
+                }
+                target.onChangeBatch(productIds, categoryIds, products);
+            }
+            // After the updates, so a product moved out of a category goes before the category
+            if (!deletedProductIds.isEmpty() || !deletedCategoryIds.isEmpty()) {
+                target.onDeletes(deletedProductIds, deletedCategoryIds);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error broadcasting change batch", e);
+        }
+    }
+
+    private static <T> Set<T> drain(Set<T> dirty) {
+        Set<T> drained = new HashSet<>();
+        for (Iterator<T> it = dirty.iterator(); it.hasNext();) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+}
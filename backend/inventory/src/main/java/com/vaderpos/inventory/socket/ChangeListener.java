@@ -1,6 +1,11 @@
 package com.vaderpos.inventory.socket;
 
+import java.util.List;
+
 public interface ChangeListener {
     void onProductChanged(Long productId);
+    void onProductsChanged(List<Long> productIds);
     void onCategoryChanged(Integer categoryId);
+    void onProductDeleted(Long productId);
+    void onCategoryDeleted(Integer categoryId);
 }
@@ -0,0 +1,53 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Ring buffer of the most recent change frames, numbered by a catalog sequence that only ever
+// goes up. A reconnecting client says which sequence it saw last and gets just the frames after
+// it, as long as they are still in the buffer. The log's own monitor only keeps each call
+// consistent; SocketConnectionHandler appends and replays under its publishLock, so a replay and
+// a live broadcast can never interleave.
+public class ChangeLog<T> {
+
+    // Sequences restart from zero with the process, so clients also have to present the epoch
+    private final long epoch = System.currentTimeMillis();
+    private final Object[] frames;
+    private long lastSeq;
+
+    public ChangeLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Change log capacity must be greater than zero");
+        }
+        this.frames = new Object[capacity];
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    // The frame must already carry lastSeq + 1 as its sequence
+    public synchronized long append(T frame) {
+        lastSeq++;
+        frames[(int) (lastSeq % frames.length)] = frame;
+        return lastSeq;
+    }
+
+    // Frames after sinceSeq in order, or null when some of them have already been overwritten
+    // (or sinceSeq is from the future, i.e. from before a restart) and a full snapshot is needed
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> since(long sinceSeq) {
+        if (sinceSeq < 0 || sinceSeq > lastSeq || sinceSeq < lastSeq - frames.length) {
+            return null;
+        }
+        List<T> missed = new ArrayList<>((int) (lastSeq - sinceSeq));
+        for (long seq = sinceSeq + 1; seq <= lastSeq; seq++) {
+            missed.add((T) frames[(int) (seq % frames.length)]);
+        }
+        return missed;
+    }
+}
@@ -0,0 +1,223 @@
+package com.vaderpos.inventory.socket;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.vaderpos.inventory.api.service.ICategoryService;
+import com.vaderpos.inventory.api.service.IProductService;
+
+// Shares committed changes between inventory instances over Postgres LISTEN/NOTIFY. Whichever
+// instance's outbox relay claims an event passes it to its own clients through this bus, which
+// also NOTIFYs the ids. The NOTIFY runs in the relay's transaction, so Postgres only delivers
+// it if the claim commits. Every other instance LISTENs, evicts the ids from its caches and
+// feeds them to its own broadcast path; an instance skips the notifications it sent itself.
+// The claiming instance evicts too: the write may have been made through another instance, in
+// which case nothing has evicted its own caches yet. Evicting twice costs a reload and moves the
+// row's ETag once more, so a client may refetch unchanged data, but never keeps stale data.
+// With the bus disabled it only forwards to the local listener.
+public class ClusterChangeBus implements ChangeListener, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterChangeBus.class);
+
+    static final String CHANNEL = "inventory_changes";
+    // NOTIFY payloads must stay under 8000 bytes
+    private static final int MAX_PAYLOAD = 7000;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final ChangeListener local;
+    private final IProductService productService;
+    private final ICategoryService categoryService;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final boolean enabled;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public ClusterChangeBus(ChangeListener local, IProductService productService, ICategoryService categoryService,
+                            DataSource dataSource, String nodeId, boolean enabled) {
+        if (nodeId.contains(" ")) {
+            throw new IllegalArgumentException("Cluster node id cannot contain spaces");
+        }
+        this.local = local;
+        this.productService = productService;
+        this.categoryService = categoryService;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.nodeId = nodeId;
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "cluster-change-bus");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+    }
+
+    @Override
+    public void onProductChanged(Long productId) {
+        productService.evictProducts(List.of(productId));
+        local.onProductChanged(productId);
+        send("product", List.of(productId));
+    }
+
+    @Override
+    public void onProductsChanged(List<Long> productIds) {
+        productService.evictProducts(productIds);
+        local.onProductsChanged(productIds);
+        send("product", productIds);
+    }
+
+    @Override
+    public void onCategoryChanged(Integer categoryId) {
+        categoryService.evictCategory(categoryId);
+        local.onCategoryChanged(categoryId);
+        send("category", List.of(categoryId));
+    }
+
+    @Override
+    public void onProductDeleted(Long productId) {
+        productService.evictProducts(List.of(productId));
+        local.onProductDeleted(productId);
+        send("productDeleted", List.of(productId));
+    }
+
+    @Override
+    public void onCategoryDeleted(Integer categoryId) {
+        categoryService.evictCategory(categoryId);
+        local.onCategoryDeleted(categoryId);
+        send("categoryDeleted", List.of(categoryId));
+    }
+
+    // Payload: "<nodeId> <kind> <id>,<id>,..."; long id lists are split over several notifications
+    private void send(String kind, Collection<?> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        String prefix = nodeId + " " + kind + " ";
+        StringBuilder payload = new StringBuilder(prefix);
+        for (Object id : ids) {
+            String value = id.toString();
+            if (payload.length() > prefix.length() && payload.length() + value.length() + 1 > MAX_PAYLOAD) {
+                notify(payload.toString());
+                payload.setLength(prefix.length());
+            }
+            if (payload.length() > prefix.length()) {
+                payload.append(',');
+            }
+            payload.append(value);
+        }
+        notify(payload.toString());
+    }
+
+    private void notify(String payload) {
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+    }
+
+    void receive(String payload) {
+        String[] parts = payload.split(" ", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        String[] values = parts[2].split(",");
+        try {
+            switch (parts[1]) {
+                case "product", "productDeleted" -> {
+                    List<Long> ids = new ArrayList<>(values.length);
+                    for (String value : values) {
+                        ids.add(Long.valueOf(value));
+                    }
+                    productService.evictProducts(ids);
+                    if (parts[1].equals("product")) {
+                        local.onProductsChanged(ids);
+                    } else {
+                        ids.forEach(local::onProductDeleted);
+                    }
+                }
+                case "category", "categoryDeleted" -> {
+                    for (String value : values) {
+                        Integer id = Integer.valueOf(value);
+                        categoryService.evictCategory(id);
+                        if (parts[1].equals("category")) {
+                            local.onCategoryChanged(id);
+                        } else {
+                            local.onCategoryDeleted(id);
+                        }
+                    }
+                }
+                default -> log.warn("Ignoring cluster change of unknown kind {}", parts[1]);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed cluster change: {}", payload);
+        }
+    }
+
+    // Holds one connection for as long as the bus runs; Postgres only delivers to the session
+    // that ran LISTEN. Notifications sent while it is reconnecting are lost.
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Cluster change bus listening as node {}", nodeId);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        try {
+                            receive(notification.getParameter());
+                        } catch (RuntimeException e) {
+                            log.warn("Failed to apply cluster change {}", notification.getParameter(), e);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cluster change bus lost its connection, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
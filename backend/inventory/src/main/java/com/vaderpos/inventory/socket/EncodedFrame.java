@@ -0,0 +1,29 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.springframework.web.socket.TextMessage;
+
+// One catalog update, serialized at most once per wire format and shared by every session
+// using that format. The JSON frame is built up front; other formats are derived from it the
+// first time a session needs them, so formats nobody is connected with cost nothing.
+public final class EncodedFrame {
+
+    private final TextMessage json;
+    private final Map<WireFormat, TextMessage> encoded = new EnumMap<>(WireFormat.class);
+
+    public EncodedFrame(JSONObject change) {
+        this.json = new TextMessage(WireFormat.JSON.encode(change));
+    }
+
+    public TextMessage in(WireFormat format) {
+        if (format == WireFormat.JSON) {
+            return json;
+        }
+        synchronized (encoded) {
+            return encoded.computeIfAbsent(format, key -> new TextMessage(key.encode(new JSONObject(json.getPayload()))));
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.vaderpos.inventory.socket;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Moves all socket writes off the threads that produce them. Each session gets a bounded
+// outbound queue drained by one task at a time on a shared sender pool, so a slow till only
+// ever holds up its own queue. With spring.threads.virtual.enabled on Java 21+ every drain runs
+// on its own virtual thread instead, so sender-threads no longer caps how many slow sessions
+// can be written to at once.
+@Component
+public class OutboundDispatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundDispatcher.class);
+
+    public enum OverflowPolicy { DROP, DISCONNECT }
+
+    // Queued in place of the change frames dropped under the DROP policy. The dropped changes left
+    // a gap in the client's seq, so it resumes from the last one it applied, as after a reconnect.
+    // Replies are never dropped: they may be the only word a client gets that its stock change
+    // went through.
+    static final TextMessage RESYNC = new TextMessage("{\"type\":\"resync\"}");
+
+    // What has been written to a session so far and what is still waiting
+    public record OutboundStats(long sentMessages, long sentBytes, int queuedMessages, long queuedBytes) {}
+
+    private final Executor senderExecutor;
+    private final int bufferMessageLimit;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitMs;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Map<String, SessionOutbound> outbounds = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedMessages = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final Counter droppedMessages;
+    private final Counter evictedSessions;
+
+    @Autowired
+    public OutboundDispatcher(@Value("${inventory.socket.sender-threads:4}") int senderThreads,
+                              @Value("${inventory.socket.buffer-message-limit:1000}") int bufferMessageLimit,
+                              @Value("${inventory.socket.buffer-size-limit:4194304}") int bufferSizeLimit,
+                              @Value("${inventory.socket.send-time-limit-ms:5000}") long sendTimeLimitMs,
+                              @Value("${inventory.socket.overflow-policy:disconnect}") String overflowPolicy,
+                              MeterRegistry meterRegistry, Environment environment) {
+        this(Threading.VIRTUAL.isActive(environment)
+                 ? new VirtualThreadTaskExecutor("socket-sender-")
+                 : Executors.newFixedThreadPool(senderThreads, namedThreads("socket-sender")),
+             bufferMessageLimit, bufferSizeLimit, sendTimeLimitMs,
+             OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase()), meterRegistry);
+    }
+
+    public OutboundDispatcher(Executor senderExecutor,
+                              int bufferMessageLimit, int bufferSizeLimit, long sendTimeLimitMs,
+                              OverflowPolicy overflowPolicy, MeterRegistry meterRegistry) {
+        this.senderExecutor = senderExecutor;
+        this.bufferMessageLimit = bufferMessageLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.overflowPolicy = overflowPolicy;
+
+        Gauge.builder("inventory.socket.outbound.queued", queuedMessages, AtomicInteger::get)
+            .description("Messages waiting in session outbound queues")
+            .register(meterRegistry);
+        Gauge.builder("inventory.socket.outbound.queued.bytes", queuedBytes, AtomicLong::get)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        // One series for the slowest session rather than one per session id; /actuator/sockets
+        // has the depth of each
+        Gauge.builder("inventory.socket.outbound.queued.max", outbounds, OutboundDispatcher::deepestQueue)
+            .description("Messages waiting in the fullest session outbound queue")
+            .register(meterRegistry);
+        this.droppedMessages = Counter.builder("inventory.socket.outbound.dropped")
+            .description("Messages dropped, and replaced by a resync, because a session's outbound queue was full")
+            .register(meterRegistry);
+        this.evictedSessions = Counter.builder("inventory.socket.sessions.evicted")
+            .description("Sessions disconnected for being too slow to keep up")
+            .register(meterRegistry);
+    }
+
+    public void register(WebSocketSession session) {
+        outbounds.put(session.getId(), new SessionOutbound(session));
+    }
+
+    public void unregister(WebSocketSession session) {
+        SessionOutbound outbound = outbounds.remove(session.getId());
+        if (outbound != null) {
+            outbound.discardQueued();
+        }
+    }
+
+    // Never blocks: the frame is queued and written by a sender thread
+    public void send(WebSocketSession session, TextMessage frame) {
+        enqueue(session, frame, true);
+    }
+
+    // Like send, but for the answer to a client's own request, which DROP keeps
+    public void reply(WebSocketSession session, TextMessage frame) {
+        enqueue(session, frame, false);
+    }
+
+    // null once the session is gone
+    public OutboundStats stats(String sessionId) {
+        SessionOutbound outbound = outbounds.get(sessionId);
+        return outbound == null ? null : outbound.stats();
+    }
+
+    @Override
+    public void destroy() {
+        if (senderExecutor instanceof ExecutorService executor) {
+            executor.shutdown();
+        }
+    }
+
+    private void enqueue(WebSocketSession session, TextMessage frame, boolean droppable) {
+        SessionOutbound outbound = outbounds.get(session.getId());
+        if (outbound != null) {
+            outbound.enqueue(new Queued(frame, droppable));
+        }
+    }
+
+    private static int deepestQueue(Map<String, SessionOutbound> outbounds) {
+        int deepest = 0;
+        for (SessionOutbound outbound : outbounds.values()) {
+            deepest = Math.max(deepest, outbound.messages.get());
+        }
+        return deepest;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // A class rather than a record: the DROP policy removes entries by identity
+    private static final class Queued {
+        private final TextMessage frame;
+        private final boolean droppable;
+
+        private Queued(TextMessage frame, boolean droppable) {
+            this.frame = frame;
+            this.droppable = droppable;
+        }
+    }
+
+    private final class SessionOutbound {
+        private final WebSocketSession session;
+        private final Queue<Queued> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger messages = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong sentMessages = new AtomicLong();
+        private final AtomicLong sentBytes = new AtomicLong();
+        // Only one drain task per session at a time, which also keeps writes to the session serial
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // When the write in progress started, 0 while idle
+        private volatile long sendStartedAt;
+
+        private SessionOutbound(WebSocketSession session) {
+            this.session = session;
+        }
+
+        private void enqueue(Queued entry) {
+            if (!session.isOpen()) {
+                return;
+            }
+            long startedAt = sendStartedAt;
+            if (startedAt != 0 && System.currentTimeMillis() - startedAt > sendTimeLimitMs) {
+                // Stuck on one write for too long; it will not catch up with more queued behind it
+                evict("Send time limit exceeded");
+                return;
+            }
+
+            queue.add(entry);
+            track(1, entry.frame.getPayloadLength());
+
+            // A single frame is always sent, even if it alone is larger than the byte limit
+            if (messages.get() > 1 && (messages.get() > bufferMessageLimit || bytes.get() > bufferSizeLimit)) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    evict("Outbound buffer limit exceeded");
+                    return;
+                }
+                int dropped = discardDroppable();
+                if (dropped > 0) {
+                    droppedMessages.increment(dropped);
+                    queue.add(new Queued(RESYNC, true));
+                    track(1, RESYNC.getPayloadLength());
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senderExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Queued entry;
+                while ((entry = queue.poll()) != null) {
+                    TextMessage frame = entry.frame;
+                    track(-1, -frame.getPayloadLength());
+                    if (!session.isOpen()) {
+                        discardQueued();
+                        return;
+                    }
+                    sendStartedAt = System.currentTimeMillis();
+                    try {
+                        session.sendMessage(frame);
+                        sentMessages.incrementAndGet();
+                        sentBytes.addAndGet(frame.getPayloadLength());
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Error sending to session {}: {}", session.getId(), e.getMessage());
+                    } finally {
+                        sendStartedAt = 0;
+                    }
+                }
+            } finally {
+                draining.set(false);
+                // Something may have been queued after the last poll but before draining was cleared
+                if (!queue.isEmpty() && session.isOpen()) {
+                    schedule();
+                }
+            }
+        }
+
+        private OutboundStats stats() {
+            return new OutboundStats(sentMessages.get(), sentBytes.get(), messages.get(), bytes.get());
+        }
+
+        private void evict(String reason) {
+            evictedSessions.increment();
+            discardQueued();
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason(reason));
+            } catch (IOException e) {
+                log.warn("Error closing slow session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+
+        // Returns how many frames were discarded
+        private int discardQueued() {
+            int discarded = 0;
+            Queued entry;
+            while ((entry = queue.poll()) != null) {
+                track(-1, -entry.frame.getPayloadLength());
+                discarded++;
+            }
+            return discarded;
+        }
+
+        // Change frames only, an earlier resync included; replies stay queued in order. Only
+        // counts what this call took out, not frames the drain task polled meanwhile.
+        private int discardDroppable() {
+            int discarded = 0;
+            for (Queued entry : queue) {
+                if (entry.droppable && queue.remove(entry)) {
+                    track(-1, -entry.frame.getPayloadLength());
+                    discarded++;
+                }
+            }
+            return discarded;
+        }
+
+        private void track(int messageDelta, long byteDelta) {
+            messages.addAndGet(messageDelta);
+            bytes.addAndGet(byteDelta);
+            queuedMessages.addAndGet(messageDelta);
+            queuedBytes.addAndGet(byteDelta);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.vaderpos.inventory.socket;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.vaderpos.inventory.socket.SubscriptionIndex.Subscription;
+
+// Every open socket session by id, with what is known about it. Adds and removes are O(1) and
+// take no lock; iterating entries() is weakly consistent, so a broadcast never fails on a
+// session connecting or leaving halfway through, it just may or may not include it.
+@Component
+public class SessionRegistry {
+
+    public enum Mode {
+        // Connected, initial sync not finished; not sent live changes yet
+        SYNCING,
+        // Sent every change
+        ALL,
+        // Sent only the changes its subscription wants
+        FILTERED
+    }
+
+    public static final class Entry {
+        private final WebSocketSession session;
+        private final WireFormat format;
+        private final Instant connectedAt = Instant.now();
+        private volatile Mode mode = Mode.SYNCING;
+        private volatile Subscription subscription;
+        private final AtomicLong lastAckSeq = new AtomicLong(-1);
+
+        private Entry(WebSocketSession session, WireFormat format) {
+            this.session = session;
+            this.format = format;
+        }
+
+        public WebSocketSession getSession() { return session; }
+
+        public WireFormat getFormat() { return format; }
+
+        public Instant getConnectedAt() { return connectedAt; }
+
+        public Mode getMode() { return mode; }
+
+        // null unless the mode is FILTERED
+        public Subscription getSubscription() { return subscription; }
+
+        // Highest seq the client acknowledged, -1 if it never did
+        public long getLastAckSeq() { return lastAckSeq.get(); }
+    }
+
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+
+    public Entry register(WebSocketSession session, WireFormat format) {
+        Entry entry = new Entry(session, format);
+        sessions.put(session.getId(), entry);
+        return entry;
+    }
+
+    public void remove(WebSocketSession session) {
+        sessions.remove(session.getId());
+    }
+
+    public Optional<Entry> get(String sessionId) {
+        return Optional.ofNullable(sessions.get(sessionId));
+    }
+
+    // JSON for sessions that are already gone
+    public WireFormat formatOf(WebSocketSession session) {
+        Entry entry = sessions.get(session.getId());
+        return entry == null ? WireFormat.JSON : entry.format;
+    }
+
+    public void receiveAll(WebSocketSession session) {
+        Entry entry = sessions.get(session.getId());
+        if (entry != null) {
+            entry.subscription = null;
+            entry.mode = Mode.ALL;
+        }
+    }
+
+    public void receiveFiltered(WebSocketSession session, Subscription subscription) {
+        Entry entry = sessions.get(session.getId());
+        if (entry != null) {
+            entry.subscription = subscription;
+            entry.mode = Mode.FILTERED;
+        }
+    }
+
+    // Acks can arrive out of order; only the highest counts
+    public void acknowledge(WebSocketSession session, long seq) {
+        Entry entry = sessions.get(session.getId());
+        if (entry != null) {
+            entry.lastAckSeq.accumulateAndGet(seq, Math::max);
+        }
+    }
+
+    public Collection<Entry> entries() {
+        return sessions.values();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -1,68 +1,168 @@
 package com.vaderpos.inventory.socket;
 
-import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import com.vaderpos.inventory.api.dto.ProductDTO;
 import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ReservationDTO;
+import com.vaderpos.inventory.api.dto.StockChangeDTO;
+import com.vaderpos.inventory.api.dto.StockLevelDTO;
 import com.vaderpos.inventory.api.service.ICategoryService;
 import com.vaderpos.inventory.api.service.IProductService;
+import com.vaderpos.inventory.api.service.IReservationService;
+import com.vaderpos.inventory.socket.SubscriptionIndex.Subscription;
 
 
-public class SocketConnectionHandler extends TextWebSocketHandler implements ChangeListener{
+public class SocketConnectionHandler extends TextWebSocketHandler implements ChangeBatchListener, SubProtocolCapable {
+
+    private static final Logger log = LoggerFactory.getLogger(SocketConnectionHandler.class);
 
     private final IProductService productService;
     private final ICategoryService categoryService;
-    // Track the last changed product and category ID for targeted updates
-    private Long lastChangedProductId = null;
-    private Integer lastChangedCategoryId = null;
-
-    public SocketConnectionHandler(IProductService productService, ICategoryService categoryService) {
+    private final IReservationService reservationService;
+    private final OutboundDispatcher outboundDispatcher;
+    // Every open session with its mode and metadata
+    private final SessionRegistry sessionRegistry;
+    private final SocketMetrics metrics;
+    // Recent change frames by catalog sequence, for clients resuming after a reconnect
+    private final ChangeLog<EncodedFrame> changeLog;
+    // Bumped on every change so the cached full-catalog frames know when they are out of date
+    private final AtomicLong productsVersion = new AtomicLong();
+    private final AtomicLong categoriesVersion = new AtomicLong();
+    private volatile VersionedFrame allProductsFrame;
+    private volatile VersionedFrame allCategoriesFrame;
+
+    public SocketConnectionHandler(IProductService productService, ICategoryService categoryService,
+                                   IReservationService reservationService, OutboundDispatcher outboundDispatcher,
+                                   SessionRegistry sessionRegistry, SocketMetrics metrics,
+                                   ChangeLog<EncodedFrame> changeLog) {
         this.productService = productService;
         this.categoryService = categoryService;
+        this.reservationService = reservationService;
+        this.outboundDispatcher = outboundDispatcher;
+        this.sessionRegistry = sessionRegistry;
+        this.metrics = metrics;
+        this.changeLog = changeLog;
     }
 
-    // Store all active connections
-    private final List<WebSocketSession> activeConnections = Collections.synchronizedList(new ArrayList<>());
+    // Orders publishing against replays to connecting clients. A ReentrantLock rather than
+    // synchronized, since building a snapshot under it can block on the database.
+    private final ReentrantLock publishLock = new ReentrantLock();
+    // Connections that only want some categories/products
+    private final SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+    // Last category each product was seen in, so subscribers of the old one hear when it moves away
+    private final Map<Long, Integer> productCategories = new ConcurrentHashMap<>();
 
 
+    // Offered during the handshake; a client asking for none of them gets JSON
     @Override
-    public void onProductChanged(Long productId){
-        System.out.println("Product change detected - broadcasting to all clients");
-        lastChangedProductId = productId;
-        broadcastChanges();
+    public List<String> getSubProtocols() {
+        return Arrays.stream(WireFormat.values()).map(WireFormat::getSubprotocol).toList();
     }
 
+    // Called by ChangeCoalescer with everything that changed since its last flush
     @Override
-    public void onCategoryChanged(Integer categoryId){
-        System.out.println("Category change detected - broadcasting to all clients");
-        lastChangedCategoryId = categoryId;
-        broadcastChanges();
+    public void onChangeBatch(Set<Long> productIds, Set<Integer> categoryIds, Map<Long, ProductDTO> products) {
+        log.debug("Change batch of {} products and {} categories", productIds.size(), categoryIds.size());
+        long startNanos = System.nanoTime();
+        // Categories first, a new product may belong to a category created in the same batch
+        if (!categoryIds.isEmpty()) {
+            categoriesVersion.incrementAndGet();
+            publishCategories(categoryIds);
+        }
+        if (!productIds.isEmpty()) {
+            productsVersion.incrementAndGet();
+            publishProducts(productIds, products);
+        }
+        metrics.recordBroadcast(startNanos);
+    }
+
+    // Deletes only carry the id; products go first since a category can only be deleted once empty
+    @Override
+    public void onDeletes(Set<Long> productIds, Set<Integer> categoryIds) {
+        log.debug("Deleted {} products and {} categories", productIds.size(), categoryIds.size());
+        long startNanos = System.nanoTime();
+        if (!productIds.isEmpty()) {
+            productsVersion.incrementAndGet();
+            for (Long productId : productIds) {
+                publishLock.lock();
+                try {
+                    EncodedFrame frame = publish(deletedFrame("productDeleted", "productId", productId));
+                    Integer categoryId = productCategories.remove(productId);
+                    for (Subscription subscription : subscriptionIndex.subscriptionsFor(productId, categoryId)) {
+                        sendToSubscribers(subscription, frame);
+                    }
+                } finally {
+                    publishLock.unlock();
+                }
+            }
+        }
+        if (!categoryIds.isEmpty()) {
+            categoriesVersion.incrementAndGet();
+            for (Integer categoryId : categoryIds) {
+                publishLock.lock();
+                try {
+                    EncodedFrame frame = publish(deletedFrame("categoryDeleted", "categoryId", categoryId));
+                    for (Subscription subscription : subscriptionIndex.subscriptionsForCategory(categoryId)) {
+                        sendToSubscribers(subscription, frame);
+                    }
+                } finally {
+                    publishLock.unlock();
+                }
+            }
+        }
+        metrics.recordBroadcast(startNanos);
     }
 
     // Executes when a client tries to connect
     @Override
     public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
         super.afterConnectionEstablished(session);
-        // Print out the session ID and store in the active connections list
-        System.out.println(session.getId() + " connected.");
-        activeConnections.add(session);
-
-        // Send all product list for initial syncing
-        broadcastAllProducts(session);
-        broadcastAllCategories(session);
+        // Print out the session ID and register it; it gets live changes once synchronized
+        log.info("{} connected", session.getId());
+        URI uri = session.getUri();
+        var query = uri == null ? null : UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+        sessionRegistry.register(session, WireFormat.negotiate(session.getAcceptedProtocol(),
+                                                               query == null ? null : query.getFirst("format")));
+        outboundDispatcher.register(session);
+
+        // Clients reconnecting with ?sinceSeq=N&epoch=E only get what they missed, clients
+        // connecting with ?categories=1,3 and/or ?products=4,5 only get those, everyone else
+        // gets the full product and category lists
+        if (query == null) {
+            synchronize(session, null, null, null);
+        } else {
+            Subscription subscription = toSubscription(
+                parseIds(query.getFirst("categories"), Integer::valueOf),
+                parseIds(query.getFirst("products"), Long::valueOf));
+            synchronize(session, parseLong(query.getFirst("sinceSeq")), parseLong(query.getFirst("epoch")), subscription);
+        }
     }
 
 
@@ -71,9 +171,11 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
     public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) throws Exception {
         super.afterConnectionClosed(session, status);
 
-        // Print out the session ID and remove from the active connections list
-        System.out.println(session.getId() + " disconnected.");
-        activeConnections.remove(session);
+        // Print out the session ID and remove it from the registry
+        log.info("{} disconnected", session.getId());
+        sessionRegistry.remove(session);
+        subscriptionIndex.unsubscribe(session);
+        outboundDispatcher.unregister(session);
     }
 
     @Override
@@ -88,13 +190,22 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
             return;
       }
 
+        long startNanos = System.nanoTime();
+        String action = null;
         JSONObject response = new JSONObject();
         try{
             String payload = message.getPayload().toString();
-            System.out.println("Received message from " +  session.getId() + ": " + payload);
+            log.debug("Received message from {}: {}", session.getId(), payload);
             JSONObject jsonObject = new JSONObject(payload);
-            long productId = jsonObject.getInt("productId");
-            String action = jsonObject.getString("action");
+            action = jsonObject.getString("action");
+            // Acks are fire-and-forget; answering every one would double the traffic
+            if (action.equals("ack")) {
+                sessionRegistry.acknowledge(session, jsonObject.getLong("seq"));
+                metrics.recordAction(action, true, startNanos);
+                return;
+            }
+            // Batch actions carry their products in "items" instead
+            Long productId = jsonObject.has("productId") ? jsonObject.getLong("productId") : null;
 
             Integer quantity = null;
             if (jsonObject.has("quantity")) {
@@ -115,6 +226,7 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
                         response.put("quantity", product.quantity());
                         response.put("price", product.price());
                         response.put("categoryId", product.categoryId());
+                        response.put("version", product.version());
                     }
                 }
                 case "takeProduct" -> {
@@ -124,19 +236,11 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
                         break;
                     }
                     try {
-                        lastChangedProductId = productId;
-                        productService.reduceProductStock(productId, quantity);
-                        Optional<ProductDTO> updatedProduct = productService.getProduct(productId);
-                        if(updatedProduct.isPresent()) {
-                            ProductDTO product = updatedProduct.get();
-                            response.put("status", "success");
-                            response.put("message", "Stock has been successfully reduced");
-                            response.put("productId", product.productId());
-                            response.put("remainingStock", product.quantity());
-                        } else {
-                            response.put("status", "error");
-                            response.put("message", "Quantity is required for this action");
-                        }
+                        int remainingStock = productService.reduceProductStock(productId, quantity);
+                        response.put("status", "success");
+                        response.put("message", "Stock has been successfully reduced");
+                        response.put("productId", productId);
+                        response.put("remainingStock", remainingStock);
                     } catch (RuntimeException e) {
                         response.put("status", "error");
                         response.put("message", e.getMessage());
@@ -149,24 +253,102 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
                         break;
                     }
                     try {
-                        lastChangedProductId = productId;
-                        productService.returnProductStock(productId, quantity);
-                        Optional<ProductDTO> updatedProduct = productService.getProduct(productId);
-                        if(updatedProduct.isPresent()) {
-                            ProductDTO product = updatedProduct.get();
-                            response.put("status", "success");
-                            response.put("message", "Stock has been successfully added");
-                            response.put("productId", product.productId());
-                            response.put("remainingStock", product.quantity());
-                        } else {
-                            response.put("status", "error");
-                            response.put("message", "Quantity is required for this action");
-                        }
+                        int remainingStock = productService.returnProductStock(productId, quantity);
+                        response.put("status", "success");
+                        response.put("message", "Stock has been successfully added");
+                        response.put("productId", productId);
+                        response.put("remainingStock", remainingStock);
+                    } catch (RuntimeException e) {
+                        response.put("status", "error");
+                        response.put("message", e.getMessage());
+                    }
+                }
+                case "takeProducts", "returnProducts" -> {
+                    if (!jsonObject.has("items")) {
+                        response.put("status", "error");
+                        response.put("message", "Items are required for this action");
+                        break;
+                    }
+                    try {
+                        List<StockChangeDTO> items = getStockChanges(jsonObject.getJSONArray("items"));
+                        boolean take = action.equals("takeProducts");
+                        List<StockLevelDTO> levels = take
+                            ? productService.reduceProductStocks(items)
+                            : productService.returnProductStocks(items);
+                        response.put("status", "success");
+                        response.put("message", take ? "Stock has been successfully reduced" : "Stock has been successfully added");
+                        response.put("items", getStockLevelObjects(levels));
+                    } catch (RuntimeException e) {
+                        response.put("status", "error");
+                        response.put("message", e.getMessage());
+                    }
+                }
+                case "holdProduct" -> {
+                    if(quantity == null) {
+                        response.put("status", "error");
+                        response.put("message", "Quantity is required for this action");
+                        break;
+                    }
+                    try {
+                        Long ttlSeconds = jsonObject.has("ttlSeconds") ? jsonObject.getLong("ttlSeconds") : null;
+                        ReservationDTO reservation = reservationService.holdProduct(productId, quantity, ttlSeconds);
+                        response.put("status", "success");
+                        response.put("message", "Stock has been successfully held");
+                        putReservation(response, reservation);
+                        response.put("availableStock", reservationService.getAvailableStock(productId));
                     } catch (RuntimeException e) {
                         response.put("status", "error");
                         response.put("message", e.getMessage());
                     }
                 }
+                case "confirmHold" -> {
+                    try {
+                        String reservationId = jsonObject.getString("reservationId");
+                        int remainingStock = reservationService.confirmHold(reservationId);
+                        response.put("status", "success");
+                        response.put("message", "Held stock has been successfully reduced");
+                        response.put("reservationId", reservationId);
+                        response.put("remainingStock", remainingStock);
+                    } catch (RuntimeException e) {
+                        response.put("status", "error");
+                        response.put("message", e.getMessage());
+                    }
+                }
+                case "releaseHold" -> {
+                    try {
+                        ReservationDTO reservation = reservationService.releaseHold(jsonObject.getString("reservationId"));
+                        response.put("status", "success");
+                        response.put("message", "Held stock has been successfully released");
+                        putReservation(response, reservation);
+                    } catch (RuntimeException e) {
+                        response.put("status", "error");
+                        response.put("message", e.getMessage());
+                    }
+                }
+                case "subscribe" -> {
+                    Long sinceSeq = jsonObject.has("sinceSeq") ? jsonObject.getLong("sinceSeq") : null;
+                    Long epoch = jsonObject.has("epoch") ? jsonObject.getLong("epoch") : null;
+                    Set<Integer> categoryIds = null;
+                    if (jsonObject.has("categories")) {
+                        categoryIds = new HashSet<>();
+                        JSONArray categoriesArray = jsonObject.getJSONArray("categories");
+                        for (int i = 0; i < categoriesArray.length(); i++) {
+                            categoryIds.add(categoriesArray.getInt(i));
+                        }
+                    }
+                    Set<Long> productIds = null;
+                    if (jsonObject.has("products")) {
+                        productIds = new HashSet<>();
+                        JSONArray productsArray = jsonObject.getJSONArray("products");
+                        for (int i = 0; i < productsArray.length(); i++) {
+                            productIds.add(productsArray.getLong(i));
+                        }
+                    }
+                    synchronize(session, sinceSeq, epoch, toSubscription(categoryIds, productIds));
+                    response.put("status", "success");
+                    response.put("message", "Subscribed to inventory updates");
+                    response.put("epoch", changeLog.getEpoch());
+                }
                 case "ping" -> {
                     response.put("status", "success");
                     response.put("message", "pong");
@@ -181,145 +363,357 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
             response.put("message", "Invalid request: " + e.getMessage());
         }
 
+        metrics.recordAction(action, "success".equals(response.optString("status")), startNanos);
         sendJson(session, response);
     }
 
-    private void broadcastChanges() {
-        // Handle category changes
-        if (lastChangedCategoryId != null) {
-            Optional<CategoryDTO> changedCategory = categoryService.getCategory(lastChangedCategoryId);
-            if (changedCategory.isEmpty()) {
-                // Category was deleted, broadcast all categories
-                broadcastAllCategories();
-            } else {
-                // Broadcast single category update
-                for (WebSocketSession session : activeConnections) {
-                    broadcastSingleCategory(session, changedCategory.get());
+    // Sends a session the changes after sinceSeq, or the full catalog when those are no longer
+    // buffered, and adds it to the live broadcast list. The replay and the add happen under the
+    // publish lock, so no live batch can be missed or arrive ahead of older ones.
+    private void synchronize(WebSocketSession session, Long sinceSeq, Long epoch, Subscription subscription) {
+        if (subscription != null) {
+            // Filtered views are small, so they always start over from a filtered snapshot rather
+            // than replaying the log. It is built under the lock from the cached catalog.
+            publishLock.lock();
+            try {
+                sessionRegistry.receiveFiltered(session, subscription);
+                sendFrame(session, filteredProductsFrame(subscription));
+                sendFrame(session, filteredCategoriesFrame(subscription));
+                subscriptionIndex.subscribe(session, subscription);
+            } finally {
+                publishLock.unlock();
+            }
+            return;
+        }
+        if (sinceSeq != null && (epoch == null || epoch == changeLog.getEpoch())) {
+            publishLock.lock();
+            try {
+                List<EncodedFrame> missed = changeLog.since(sinceSeq);
+                if (missed != null) {
+                    missed.forEach(frame -> sendFrame(session, frame));
+                    addConnection(session);
+                    return;
                 }
+            } finally {
+                publishLock.unlock();
             }
-            lastChangedCategoryId = null; // Reset
+            log.info("{} is too far behind (seq {}), sending full catalog", session.getId(), sinceSeq);
         }
 
-            // Handle product changes
-        if (lastChangedProductId != null) {
-            Optional<ProductDTO> changedProduct = productService.getProduct(lastChangedProductId);
-            if (changedProduct.isEmpty()) {
-                // Product was deleted, broadcast all products
-                broadcastAllProducts();
-            } else {
-                // Broadcast single product update
-                for (WebSocketSession session : activeConnections) {
-                    broadcastSingleProduct(session, changedProduct.get());
+        // A cached snapshot can be older than the buffer; it is rebuilt once that happens
+        boolean rebuild = false;
+        while (true) {
+            VersionedFrame products = allProductsFrame(rebuild);
+            VersionedFrame categories = allCategoriesFrame(rebuild);
+            publishLock.lock();
+            try {
+                // Anything changed after the older snapshot is replayed on top; reapplying is harmless
+                List<EncodedFrame> missed = changeLog.since(Math.min(products.seq(), categories.seq()));
+                if (missed != null) {
+                    sendFrame(session, products.message());
+                    sendFrame(session, categories.message());
+                    missed.forEach(frame -> sendFrame(session, frame));
+                    addConnection(session);
+                    return;
                 }
+            } finally {
+                publishLock.unlock();
             }
-            lastChangedProductId = null; // Reset
+            rebuild = true;
         }
+    }
 
-        // If no specific changes tracked, broadcast everything
-        if (lastChangedProductId == null && lastChangedCategoryId == null) {
-            broadcastAllProducts();
-            broadcastAllCategories();
-        }
+    private void addConnection(WebSocketSession session) {
+        subscriptionIndex.unsubscribe(session);
+        sessionRegistry.receiveAll(session);
     }
 
-    private void broadcastAllProducts() {
-        for (WebSocketSession session : activeConnections) {
-            broadcastAllProducts(session);
+    // Numbers the change, keeps it for resuming clients and sends it to every unfiltered session.
+    // Callers that also fan out to subscriptions hold the lock across both.
+    private EncodedFrame publish(JSONObject change) {
+        publishLock.lock();
+        try {
+            change.put("seq", changeLog.getLastSeq() + 1);
+            change.put("epoch", changeLog.getEpoch());
+            EncodedFrame frame = new EncodedFrame(change);
+            metrics.recordChangeFrame(frame.in(WireFormat.JSON).getPayloadLength());
+            changeLog.append(frame);
+            broadcastToAll(frame);
+            return frame;
+        } finally {
+            publishLock.unlock();
         }
     }
 
-    private void broadcastAllCategories() {
-        for (WebSocketSession session : activeConnections) {
-            broadcastAllCategories(session);
+    private void publishProducts(Set<Long> productIds, Map<Long, ProductDTO> products) {
+        List<ProductDTO> updated = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (Long productId : productIds) {
+            ProductDTO product = products.get(productId);
+            if (product != null) {
+                updated.add(product);
+            } else {
+                deleted.add(productId);
+            }
         }
-    }
 
-    private void broadcastSingleProduct(WebSocketSession session, ProductDTO product) {
+        publishLock.lock();
         try {
-            if (session.isOpen()) {
-
-                JSONObject broadcast = new JSONObject();
-                broadcast.put("type", "productUpdate");
-                broadcast.put("timestamp", System.currentTimeMillis());
-                broadcast.put("updateType", "single");
-                JSONObject singleProductUpdate = getProductObject(product);
-                broadcast.put("updatedProduct", singleProductUpdate);
+            publish(productBatch(updated, deleted));
+            long seq = changeLog.getLastSeq();
+
+            // Each subscription gets the rows it wants, plus tombstones for rows that left its view
+            Map<Subscription, List<ProductDTO>> updates = new HashMap<>();
+            Map<Subscription, List<Long>> removals = new HashMap<>();
+            for (ProductDTO product : updated) {
+                for (Subscription subscription : subscriptionIndex.subscriptionsFor(product.productId(), product.categoryId())) {
+                    updates.computeIfAbsent(subscription, key -> new ArrayList<>()).add(product);
+                }
+                Integer previousCategory = productCategories.put(product.productId(), product.categoryId());
+                if (previousCategory != null && !previousCategory.equals(product.categoryId())) {
+                    for (Subscription subscription : subscriptionIndex.subscriptionsForCategory(previousCategory)) {
+                        if (!subscription.wants(product)) {
+                            removals.computeIfAbsent(subscription, key -> new ArrayList<>()).add(product.productId());
+                        }
+                    }
+                }
+            }
+            for (Long productId : deleted) {
+                for (Subscription subscription : subscriptionIndex.subscriptionsFor(productId, productCategories.remove(productId))) {
+                    removals.computeIfAbsent(subscription, key -> new ArrayList<>()).add(productId);
+                }
+            }
 
-                session.sendMessage(new TextMessage(broadcast.toString()));
+            Set<Subscription> interested = new HashSet<>(updates.keySet());
+            interested.addAll(removals.keySet());
+            for (Subscription subscription : interested) {
+                JSONObject filtered = productBatch(updates.getOrDefault(subscription, List.of()),
+                                                   removals.getOrDefault(subscription, List.of()));
+                sendToSubscribers(subscription, stamp(filtered, seq));
             }
-        } catch (Exception e) {
-            System.err.println("Error broadcasting to session " + session.getId() + ": " + e.getMessage());
+        } finally {
+            publishLock.unlock();
         }
     }
 
-    private void broadcastSingleCategory(WebSocketSession session, CategoryDTO category) {
+    private void publishCategories(Set<Integer> categoryIds) {
+        List<CategoryDTO> updated = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        for (Integer categoryId : categoryIds) {
+            Optional<CategoryDTO> category = categoryService.getCategory(categoryId);
+            if (category.isPresent()) {
+                updated.add(category.get());
+            } else {
+                deleted.add(categoryId);
+            }
+        }
+
+        publishLock.lock();
         try {
-            if (session.isOpen()) {
+            publish(categoryBatch(updated, deleted));
+            long seq = changeLog.getLastSeq();
+
+            Map<Subscription, List<CategoryDTO>> updates = new HashMap<>();
+            Map<Subscription, List<Integer>> removals = new HashMap<>();
+            for (CategoryDTO category : updated) {
+                for (Subscription subscription : subscriptionIndex.subscriptionsForCategory(category.categoryId())) {
+                    updates.computeIfAbsent(subscription, key -> new ArrayList<>()).add(category);
+                }
+            }
+            for (Integer categoryId : deleted) {
+                for (Subscription subscription : subscriptionIndex.subscriptionsForCategory(categoryId)) {
+                    removals.computeIfAbsent(subscription, key -> new ArrayList<>()).add(categoryId);
+                }
+            }
 
-                JSONObject broadcast = new JSONObject();
-                broadcast.put("type", "categoryUpdate");
-                broadcast.put("timestamp", System.currentTimeMillis());
-                broadcast.put("updateType", "single");
-                JSONObject singleCategoryUpdate = getCategoryObject(category);
-                broadcast.put("updatedCategory", singleCategoryUpdate);
+            Set<Subscription> interested = new HashSet<>(updates.keySet());
+            interested.addAll(removals.keySet());
+            for (Subscription subscription : interested) {
+                JSONObject filtered = categoryBatch(updates.getOrDefault(subscription, List.of()),
+                                                    removals.getOrDefault(subscription, List.of()));
+                sendToSubscribers(subscription, stamp(filtered, seq));
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    // Filtered frames carry the sequence of the change they were cut from
+    private EncodedFrame stamp(JSONObject change, long seq) {
+        change.put("seq", seq);
+        change.put("epoch", changeLog.getEpoch());
+        return new EncodedFrame(change);
+    }
 
-                session.sendMessage(new TextMessage(broadcast.toString()));
+    private void sendToSubscribers(Subscription subscription, EncodedFrame frame) {
+        for (WebSocketSession session : subscriptionIndex.sessionsOf(subscription)) {
+            sendFrame(session, frame);
+        }
+    }
+
+    // Every frame is serialized once per wire format and the same TextMessage goes to every session
+    private void broadcastToAll(EncodedFrame frame) {
+        for (SessionRegistry.Entry entry : sessionRegistry.entries()) {
+            if (entry.getMode() == SessionRegistry.Mode.ALL) {
+                outboundDispatcher.send(entry.getSession(), frame.in(entry.getFormat()));
             }
-        } catch (Exception e) {
-            System.err.println("Error broadcasting to session " + session.getId() + ": " + e.getMessage());
         }
     }
 
-    private void broadcastAllProducts(WebSocketSession session) {
-        try {
-            if (session.isOpen()) {
-                List<ProductDTO> products = productService.getAllProducts();
+    private void sendFrame(WebSocketSession session, EncodedFrame frame) {
+        outboundDispatcher.send(session, frame.in(sessionRegistry.formatOf(session)));
+    }
+
+    // Rows that no longer exist (or no longer match a subscription) are sent as tombstones in deletedProductIds
+    private static JSONObject productBatch(List<ProductDTO> updated, Collection<Long> deleted) {
+        JSONObject broadcast = new JSONObject();
+        broadcast.put("type", "productUpdate");
+        broadcast.put("timestamp", System.currentTimeMillis());
+        broadcast.put("updateType", "batch");
+        broadcast.put("updatedProducts", getProductObjects(updated));
+        broadcast.put("deletedProductIds", new JSONArray(deleted));
+        return broadcast;
+    }
 
-                JSONObject broadcast = new JSONObject();
-                broadcast.put("type", "productUpdate");
-                broadcast.put("timestamp", System.currentTimeMillis());
-                broadcast.put("updateType", "global");
-                JSONArray productsArray = getProductObjects(products);
+    private static JSONObject categoryBatch(List<CategoryDTO> updated, Collection<Integer> deleted) {
+        JSONObject broadcast = new JSONObject();
+        broadcast.put("type", "categoryUpdate");
+        broadcast.put("timestamp", System.currentTimeMillis());
+        broadcast.put("updateType", "batch");
+        broadcast.put("updatedCategories", getCategoryObjects(updated));
+        broadcast.put("deletedCategoryIds", new JSONArray(deleted));
+        return broadcast;
+    }
 
-                broadcast.put("products", productsArray);
+    private static JSONObject deletedFrame(String type, String idField, Object id) {
+        JSONObject broadcast = new JSONObject();
+        broadcast.put("type", type);
+        broadcast.put("timestamp", System.currentTimeMillis());
+        broadcast.put(idField, id);
+        return broadcast;
+    }
 
-                session.sendMessage(new TextMessage(broadcast.toString()));
-            }
-        } catch (Exception e) {
-            System.err.println("Error broadcasting to session " + session.getId() + ": " + e.getMessage());
+    // The full-catalog frames are rebuilt only after the catalog changed; until then every
+    // reconnect reuses the same serialized snapshot
+    private VersionedFrame allProductsFrame(boolean rebuild) {
+        long seq = changeLog.getLastSeq();
+        long version = productsVersion.get();
+        VersionedFrame frame = allProductsFrame;
+        if (rebuild || frame == null || frame.version() != version) {
+            JSONObject broadcast = new JSONObject();
+            broadcast.put("type", "productUpdate");
+            broadcast.put("timestamp", System.currentTimeMillis());
+            broadcast.put("updateType", "global");
+            broadcast.put("seq", seq);
+            broadcast.put("epoch", changeLog.getEpoch());
+            List<ProductDTO> products = productService.getAllProducts();
+            rememberCategories(products);
+            broadcast.put("products", getProductObjects(products));
+            frame = new VersionedFrame(version, seq, new EncodedFrame(broadcast));
+            allProductsFrame = frame;
         }
+        return frame;
     }
 
-    private void broadcastAllCategories(WebSocketSession session) {
-        try {
-            if (session.isOpen()) {
-                List<CategoryDTO> categories = categoryService.getAllCategories();
+    private VersionedFrame allCategoriesFrame(boolean rebuild) {
+        long seq = changeLog.getLastSeq();
+        long version = categoriesVersion.get();
+        VersionedFrame frame = allCategoriesFrame;
+        if (rebuild || frame == null || frame.version() != version) {
+            JSONObject broadcast = new JSONObject();
+            broadcast.put("type", "categoryUpdate");
+            broadcast.put("timestamp", System.currentTimeMillis());
+            broadcast.put("updateType", "global");
+            broadcast.put("seq", seq);
+            broadcast.put("epoch", changeLog.getEpoch());
+            broadcast.put("categories", getCategoryObjects(categoryService.getAllCategories()));
+            frame = new VersionedFrame(version, seq, new EncodedFrame(broadcast));
+            allCategoriesFrame = frame;
+        }
+        return frame;
+    }
+
+    // Only built for the session that asked, under the publish lock
+    private EncodedFrame filteredProductsFrame(Subscription subscription) {
+        List<ProductDTO> products = productService.getAllProducts();
+        rememberCategories(products);
+        JSONObject broadcast = new JSONObject();
+        broadcast.put("type", "productUpdate");
+        broadcast.put("timestamp", System.currentTimeMillis());
+        broadcast.put("updateType", "global");
+        broadcast.put("seq", changeLog.getLastSeq());
+        broadcast.put("epoch", changeLog.getEpoch());
+        broadcast.put("products", getProductObjects(products.stream().filter(subscription::wants).toList()));
+        return new EncodedFrame(broadcast);
+    }
 
-                JSONObject broadcast = new JSONObject();
-                broadcast.put("type", "categoryUpdate");
-                broadcast.put("timestamp", System.currentTimeMillis());
-                broadcast.put("updateType", "global");
-                JSONArray categoriesArray = getCategoryObjects(categories);
+    private EncodedFrame filteredCategoriesFrame(Subscription subscription) {
+        List<CategoryDTO> categories = categoryService.getAllCategories().stream()
+            .filter(category -> subscription.wantsCategory(category.categoryId()))
+            .toList();
+        JSONObject broadcast = new JSONObject();
+        broadcast.put("type", "categoryUpdate");
+        broadcast.put("timestamp", System.currentTimeMillis());
+        broadcast.put("updateType", "global");
+        broadcast.put("seq", changeLog.getLastSeq());
+        broadcast.put("epoch", changeLog.getEpoch());
+        broadcast.put("categories", getCategoryObjects(categories));
+        return new EncodedFrame(broadcast);
+    }
+
+    // Batches overwrite what they see; a snapshot only fills in products not seen yet, since it may be older
+    private void rememberCategories(List<ProductDTO> products) {
+        for (ProductDTO product : products) {
+            productCategories.putIfAbsent(product.productId(), product.categoryId());
+        }
+    }
 
-                broadcast.put("categories", categoriesArray);
+    // seq and version are read before the catalog, so a frame is never labelled newer than its contents
+    private record VersionedFrame(long version, long seq, EncodedFrame message) {
+    }
+
+    // null when neither is given, meaning the session wants everything
+    private static Subscription toSubscription(Set<Integer> categoryIds, Set<Long> productIds) {
+        if (categoryIds == null && productIds == null) {
+            return null;
+        }
+        return new Subscription(categoryIds == null ? Set.of() : categoryIds,
+                                productIds == null ? Set.of() : productIds);
+    }
 
-                session.sendMessage(new TextMessage(broadcast.toString()));
+    private static <T> Set<T> parseIds(String value, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        Set<T> ids = new HashSet<>();
+        try {
+            for (String id : value.split(",")) {
+                if (!id.isBlank()) {
+                    ids.add(parser.apply(id.trim()));
+                }
             }
-        } catch (Exception e) {
-            System.err.println("Error broadcasting to session " + session.getId() + ": " + e.getMessage());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ids;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
-    private static JSONArray getProductObjects(List<ProductDTO> products) {
+    // Package-private for BroadcastSerializationBenchmark
+    static JSONArray getProductObjects(List<ProductDTO> products) {
         JSONArray productsArray = new JSONArray();
         for (ProductDTO product : products) {
-            JSONObject productJson = new JSONObject();
-            productJson.put("productId", product.productId());
-            productJson.put("productName", product.productName());
-            productJson.put("quantity", product.quantity());
-            productJson.put("price", product.price());
-            productJson.put("categoryId", product.categoryId());
-            productsArray.put(productJson);
+            productsArray.put(getProductObject(product));
         }
         return productsArray;
     }
@@ -327,14 +721,38 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
     private static JSONArray getCategoryObjects(List<CategoryDTO> categories) {
         JSONArray categoriesArray = new JSONArray();
         for (CategoryDTO category : categories) {
-            JSONObject categoryJson = new JSONObject();
-            categoryJson.put("categoryId", category.categoryId());
-            categoryJson.put("categoryName", category.categoryName());
-            categoriesArray.put(categoryJson);
+            categoriesArray.put(getCategoryObject(category));
         }
         return categoriesArray;
     }
 
+    private static List<StockChangeDTO> getStockChanges(JSONArray itemsArray) {
+        List<StockChangeDTO> items = new ArrayList<>();
+        for (int i = 0; i < itemsArray.length(); i++) {
+            JSONObject item = itemsArray.getJSONObject(i);
+            items.add(new StockChangeDTO(item.getLong("productId"), item.getInt("quantity")));
+        }
+        return items;
+    }
+
+    private static JSONArray getStockLevelObjects(List<StockLevelDTO> levels) {
+        JSONArray levelsArray = new JSONArray();
+        for (StockLevelDTO level : levels) {
+            JSONObject levelJson = new JSONObject();
+            levelJson.put("productId", level.productId());
+            levelJson.put("remainingStock", level.remainingStock());
+            levelsArray.put(levelJson);
+        }
+        return levelsArray;
+    }
+
+    private static void putReservation(JSONObject json, ReservationDTO reservation) {
+        json.put("reservationId", reservation.reservationId());
+        json.put("productId", reservation.productId());
+        json.put("quantity", reservation.quantity());
+        json.put("expiresAt", reservation.expiresAt());
+    }
+
     private static JSONObject getProductObject(ProductDTO product) {
         JSONObject productJson = new JSONObject();
         productJson.put("productId", product.productId());
@@ -342,6 +760,7 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
         productJson.put("quantity", product.quantity());
         productJson.put("price", product.price());
         productJson.put("categoryId", product.categoryId());
+        productJson.put("version", product.version());
 
         return productJson;
     }
@@ -354,8 +773,9 @@ public class SocketConnectionHandler extends TextWebSocketHandler implements Cha
         return categoryJson;
     }
 
-    private void sendJson(WebSocketSession session, JSONObject json) throws IOException {
-        session.sendMessage(new TextMessage(json.toString()));
+    // Replies share the session's outbound queue so they never race a broadcast on the same socket
+    private void sendJson(WebSocketSession session, JSONObject json) {
+        outboundDispatcher.reply(session, new TextMessage(json.toString()));
     }
 
 }
@@ -0,0 +1,63 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Meters for the socket handler. Timers are looked up once per action and outcome and then
+// reused, so recording a message allocates nothing.
+public class SocketMetrics {
+
+    // Anything else a client sends is counted as "unknown", so clients cannot add tags at will
+    private static final Set<String> ACTIONS = Set.of(
+        "getProduct", "takeProduct", "returnProduct", "takeProducts", "returnProducts",
+        "holdProduct", "confirmHold", "releaseHold", "subscribe", "ping", "ack");
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> succeeded = new ConcurrentHashMap<>();
+    private final Map<String, Timer> failed = new ConcurrentHashMap<>();
+    private final Timer broadcast;
+    private final DistributionSummary changeBytes;
+
+    public SocketMetrics(MeterRegistry meterRegistry, SessionRegistry sessionRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.broadcast = Timer.builder("inventory.socket.broadcast")
+            .description("Time from a change batch arriving to its frames being queued for every session")
+            .register(meterRegistry);
+        this.changeBytes = DistributionSummary.builder("inventory.socket.broadcast.bytes")
+            .description("Size of each change frame sent to receive-everything sessions")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("inventory.socket.sessions", sessionRegistry, SessionRegistry::size)
+            .description("Open socket sessions")
+            .register(meterRegistry);
+    }
+
+    public void recordAction(String action, boolean success, long startNanos) {
+        String name = action != null && ACTIONS.contains(action) ? action : "unknown";
+        Map<String, Timer> timers = success ? succeeded : failed;
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(name, key -> Timer.builder("inventory.socket.action")
+                .description("Socket messages handled, by action")
+                .tag("action", key)
+                .tag("outcome", success ? "success" : "error")
+                .register(meterRegistry));
+        }
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBroadcast(long startNanos) {
+        broadcast.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordChangeFrame(int bytes) {
+        changeBytes.record(bytes);
+    }
+}
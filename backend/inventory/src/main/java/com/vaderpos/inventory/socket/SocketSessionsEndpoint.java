@@ -0,0 +1,59 @@
+package com.vaderpos.inventory.socket;
+
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.vaderpos.inventory.socket.SubscriptionIndex.Subscription;
+
+// /actuator/sockets: the live socket sessions, oldest first
+@Component
+@Endpoint(id = "sockets")
+public class SocketSessionsEndpoint {
+
+    public record SessionView(String id, String remoteAddress, Instant connectedAt, String format, String mode,
+                              Set<Integer> categoryIds, Set<Long> productIds, long lastAckSeq,
+                              long sentMessages, long sentBytes, int queuedMessages, long queuedBytes) {}
+
+    private final SessionRegistry sessionRegistry;
+    private final OutboundDispatcher outboundDispatcher;
+
+    public SocketSessionsEndpoint(SessionRegistry sessionRegistry, OutboundDispatcher outboundDispatcher) {
+        this.sessionRegistry = sessionRegistry;
+        this.outboundDispatcher = outboundDispatcher;
+    }
+
+    @ReadOperation
+    public List<SessionView> sessions() {
+        return sessionRegistry.entries().stream()
+            .map(this::view)
+            .sorted(Comparator.comparing(SessionView::connectedAt).thenComparing(SessionView::id))
+            .toList();
+    }
+
+    private SessionView view(SessionRegistry.Entry entry) {
+        InetSocketAddress remote = entry.getSession().getRemoteAddress();
+        Subscription subscription = entry.getSubscription();
+        OutboundDispatcher.OutboundStats stats = outboundDispatcher.stats(entry.getSession().getId());
+        if (stats == null) {
+            // Closed while the list was being built
+            stats = new OutboundDispatcher.OutboundStats(0, 0, 0, 0);
+        }
+        return new SessionView(
+            entry.getSession().getId(),
+            remote == null ? null : remote.getAddress() == null ? remote.getHostString() : remote.getAddress().getHostAddress(),
+            entry.getConnectedAt(),
+            entry.getFormat().getSubprotocol(),
+            entry.getMode().name().toLowerCase(),
+            subscription == null ? Set.of() : subscription.categoryIds(),
+            subscription == null ? Set.of() : subscription.productIds(),
+            entry.getLastAckSeq(),
+            stats.sentMessages(), stats.sentBytes(), stats.queuedMessages(), stats.queuedBytes());
+    }
+}
@@ -0,0 +1,101 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.web.socket.WebSocketSession;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+
+// Sessions that only want some categories and/or products, indexed by those ids so a change
+// only has to look at the subscriptions it concerns. Sessions asking for the same thing share
+// one Subscription, and with it one serialized frame per change.
+public class SubscriptionIndex {
+
+    public record Subscription(Set<Integer> categoryIds, Set<Long> productIds) {
+
+        public Subscription {
+            categoryIds = Set.copyOf(categoryIds);
+            productIds = Set.copyOf(productIds);
+        }
+
+        public boolean wants(ProductDTO product) {
+            return productIds.contains(product.productId()) || categoryIds.contains(product.categoryId());
+        }
+
+        public boolean wantsCategory(Integer categoryId) {
+            return categoryIds.contains(categoryId);
+        }
+    }
+
+    private final Map<String, Subscription> bySession = new HashMap<>();
+    private final Map<Subscription, Set<WebSocketSession>> sessions = new HashMap<>();
+    private final Map<Integer, Set<Subscription>> byCategory = new HashMap<>();
+    private final Map<Long, Set<Subscription>> byProduct = new HashMap<>();
+
+    public synchronized void subscribe(WebSocketSession session, Subscription subscription) {
+        unsubscribe(session);
+        bySession.put(session.getId(), subscription);
+        Set<WebSocketSession> members = sessions.computeIfAbsent(subscription, key -> new HashSet<>());
+        if (members.isEmpty()) {
+            for (Integer categoryId : subscription.categoryIds()) {
+                byCategory.computeIfAbsent(categoryId, key -> new HashSet<>()).add(subscription);
+            }
+            for (Long productId : subscription.productIds()) {
+                byProduct.computeIfAbsent(productId, key -> new HashSet<>()).add(subscription);
+            }
+        }
+        members.add(session);
+    }
+
+    // Returns whether the session had a subscription
+    public synchronized boolean unsubscribe(WebSocketSession session) {
+        Subscription subscription = bySession.remove(session.getId());
+        if (subscription == null) {
+            return false;
+        }
+        Set<WebSocketSession> members = sessions.get(subscription);
+        members.remove(session);
+        if (members.isEmpty()) {
+            sessions.remove(subscription);
+            for (Integer categoryId : subscription.categoryIds()) {
+                removeFromIndex(byCategory, categoryId, subscription);
+            }
+            for (Long productId : subscription.productIds()) {
+                removeFromIndex(byProduct, productId, subscription);
+            }
+        }
+        return true;
+    }
+
+    // Subscriptions that want the product, either by its id or by its category
+    public synchronized Set<Subscription> subscriptionsFor(Long productId, Integer categoryId) {
+        Set<Subscription> found = new HashSet<>(byProduct.getOrDefault(productId, Set.of()));
+        if (categoryId != null) {
+            found.addAll(byCategory.getOrDefault(categoryId, Set.of()));
+        }
+        return found;
+    }
+
+    public synchronized Set<Subscription> subscriptionsForCategory(Integer categoryId) {
+        return new HashSet<>(byCategory.getOrDefault(categoryId, Set.of()));
+    }
+
+    public synchronized List<WebSocketSession> sessionsOf(Subscription subscription) {
+        return new ArrayList<>(sessions.getOrDefault(subscription, Set.of()));
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Subscription>> index, K key, Subscription subscription) {
+        Set<Subscription> subscriptions = index.get(key);
+        if (subscriptions != null) {
+            subscriptions.remove(subscription);
+            if (subscriptions.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
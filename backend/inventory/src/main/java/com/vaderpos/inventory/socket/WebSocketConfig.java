@@ -1,5 +1,10 @@
 package com.vaderpos.inventory.socket;
 
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -7,10 +12,13 @@ import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.lang.NonNull;
 
+import com.vaderpos.inventory.api.search.ProductSearchIndex;
 import com.vaderpos.inventory.api.service.IProductService;
 import com.vaderpos.inventory.api.service.ICategoryService;
-import com.vaderpos.inventory.api.service.ProductServiceImpl;
-import com.vaderpos.inventory.api.service.CategoryServiceImpl;
+import com.vaderpos.inventory.api.service.IReservationService;
+import com.vaderpos.inventory.api.service.OutboxRelay;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @EnableWebSocket
 @Configuration 
@@ -18,10 +26,25 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     private final IProductService productService;
     private final ICategoryService categoryService;
+    private final IReservationService reservationService;
+    private final OutboundDispatcher outboundDispatcher;
+    private final OutboxRelay outboxRelay;
+    private final SessionRegistry sessionRegistry;
+    private final MeterRegistry meterRegistry;
+    private final int changeLogSize;
 
-    public WebSocketConfig(IProductService productService, ICategoryService categoryService) {
+    public WebSocketConfig(IProductService productService, ICategoryService categoryService,
+                           IReservationService reservationService, OutboundDispatcher outboundDispatcher,
+                           OutboxRelay outboxRelay, SessionRegistry sessionRegistry, MeterRegistry meterRegistry,
+                           @Value("${inventory.socket.change-log-size:1024}") int changeLogSize) {
         this.productService = productService;
         this.categoryService = categoryService;
+        this.reservationService = reservationService;
+        this.outboundDispatcher = outboundDispatcher;
+        this.outboxRelay = outboxRelay;
+        this.sessionRegistry = sessionRegistry;
+        this.meterRegistry = meterRegistry;
+        this.changeLogSize = changeLogSize;
     }
 
     @Override
@@ -33,16 +56,30 @@ public class WebSocketConfig implements WebSocketConfigurer {
 
     @Bean
     public SocketConnectionHandler socketConnectionHandler() {
-        SocketConnectionHandler handler = new SocketConnectionHandler(productService, categoryService);
-
-        if (productService instanceof ProductServiceImpl) {
-            ((ProductServiceImpl) productService).setChangeListener(handler);
-        }
+        return new SocketConnectionHandler(productService, categoryService, reservationService, outboundDispatcher,
+                                           sessionRegistry, new SocketMetrics(meterRegistry, sessionRegistry),
+                                           new ChangeLog<>(changeLogSize));
+    }
 
-        if (categoryService instanceof CategoryServiceImpl) {
-            ((CategoryServiceImpl) categoryService).setChangeListener(handler);
-        }
+    // Changes reach the coalescer, which hands them to the search index and the socket handler in
+    // batches, from the cluster bus: either this instance's outbox relay published them or another
+    // instance did. The index goes first so a till hearing of a change can already search for it.
+    @Bean
+    public ChangeCoalescer changeCoalescer(ProductSearchIndex productSearchIndex,
+                                           @Value("${inventory.socket.coalesce-window-ms:100}") long windowMs,
+                                           @Value("${inventory.socket.coalesce-max-ids:1000}") int maxBatchSize) {
+        return new ChangeCoalescer(ChangeBatchListener.of(productSearchIndex, socketConnectionHandler()),
+                                   productService, windowMs, maxBatchSize);
+    }
 
-        return handler;
+    @Bean
+    public ClusterChangeBus clusterChangeBus(ChangeCoalescer changeCoalescer, DataSource dataSource,
+                                             @Value("${inventory.cluster.enabled:false}") boolean enabled,
+                                             @Value("${inventory.cluster.node-id:}") String nodeId) {
+        ClusterChangeBus bus = new ClusterChangeBus(changeCoalescer, productService, categoryService, dataSource,
+                                                    nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId, enabled);
+        outboxRelay.setChangeListener(bus);
+        bus.start();
+        return bus;
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.vaderpos.inventory.socket;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// How catalog updates are written to a session. Clients pick one with the WebSocket subprotocol
+// (Sec-WebSocket-Protocol) or ?format= on the URL; replies to actions are always plain JSON.
+public enum WireFormat {
+
+    // One object per row, as the frames have always looked
+    JSON("inventory.json"),
+    // Row lists turned into one array per field, so field names appear once per frame instead
+    // of once per row; no timestamp, seq and epoch already order the updates
+    COLUMNAR("inventory.columnar");
+
+    private final String subprotocol;
+
+    WireFormat(String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+
+    public String getSubprotocol() {
+        return subprotocol;
+    }
+
+    // The subprotocol decides when one was accepted, then ?format=; anything unknown is JSON
+    public static WireFormat negotiate(String acceptedProtocol, String formatParameter) {
+        for (WireFormat format : values()) {
+            if (format.subprotocol.equals(acceptedProtocol)) {
+                return format;
+            }
+        }
+        if (formatParameter != null) {
+            for (WireFormat format : values()) {
+                if (format.name().equalsIgnoreCase(formatParameter.trim())) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    // Encodes a change built in the JSON layout
+    String encode(JSONObject change) {
+        if (this == JSON) {
+            return change.toString();
+        }
+        JSONObject compact = new JSONObject();
+        for (Iterator<String> keys = change.keys(); keys.hasNext(); ) {
+            String key = keys.next();
+            if (key.equals("timestamp")) {
+                continue;
+            }
+            Object value = change.get(key);
+            compact.put(key, value instanceof JSONArray rows && isRowList(rows) ? columns(rows) : value);
+        }
+        return compact.toString();
+    }
+
+    private static boolean isRowList(JSONArray rows) {
+        return rows.length() > 0 && rows.get(0) instanceof JSONObject;
+    }
+
+    // {"productId": [4, 5], "productName": ["Safeguard", "Surf"], ...}; a field a row lacks is null
+    private static JSONObject columns(JSONArray rows) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (int i = 0; i < rows.length(); i++) {
+            rows.getJSONObject(i).keys().forEachRemaining(fields::add);
+        }
+        JSONObject columns = new JSONObject();
+        for (String field : fields) {
+            JSONArray column = new JSONArray();
+            for (int i = 0; i < rows.length(); i++) {
+                Object value = rows.getJSONObject(i).opt(field);
+                column.put(value == null ? JSONObject.NULL : value);
+            }
+            columns.put(field, column);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,9 @@
+-- Keyset pagination and filters for GET /api/products and GET /api/categories.
+-- Every ordering ends with the primary key so a page can resume from (value, id).
+CREATE INDEX idx_product_category ON product (category_id, product_id);
+CREATE INDEX idx_product_price ON product (price, product_id);
+CREATE INDEX idx_product_quantity ON product (quantity, product_id);
+
+-- Case-insensitive name prefix search (upper(name) LIKE 'PREFIX%')
+CREATE INDEX idx_product_name_prefix ON product (upper(product_name) text_pattern_ops);
+CREATE INDEX idx_product_category_name_prefix ON product_category (upper(category_name) text_pattern_ops);
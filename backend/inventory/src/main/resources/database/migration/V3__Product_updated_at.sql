@@ -0,0 +1,16 @@
+-- When each product row last changed, for incremental exports (GET /api/products/export?updatedAfter=).
+-- Kept by a trigger because stock changes are plain UPDATE statements that bypass JPA.
+ALTER TABLE product ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp();
+
+CREATE FUNCTION product_touch_updated_at() RETURNS trigger AS $$
+BEGIN
+    NEW.updated_at = clock_timestamp();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER product_updated_at
+    BEFORE UPDATE ON product
+    FOR EACH ROW EXECUTE FUNCTION product_touch_updated_at();
+
+CREATE INDEX idx_product_updated_at ON product (updated_at);
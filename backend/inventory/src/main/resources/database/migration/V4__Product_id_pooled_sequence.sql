@@ -0,0 +1,4 @@
+-- Product ids come from the sequence in blocks of 50 (Hibernate's pooled optimizer) instead of
+-- IDENTITY, which lets inserts be batched. Must match allocationSize on Product.productId.
+-- Plain nextval() callers (the column default) still get unique ids: every call reserves a block.
+ALTER SEQUENCE product_product_id_seq INCREMENT BY 50;
@@ -0,0 +1,3 @@
+-- Optimistic locking for Product (@Version). The stock UPDATEs in IProductRepository bump it
+-- too, so an edit based on a stale read fails instead of overwriting a till's stock change.
+ALTER TABLE product ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
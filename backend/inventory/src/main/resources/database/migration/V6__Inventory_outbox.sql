@@ -0,0 +1,37 @@
+-- Transactional outbox: every product/category write records an event in the same transaction,
+-- so an event exists exactly when the write committed. OutboxRelay publishes unpublished events
+-- in id order and stamps published_at; published rows are kept for a while as change history.
+-- Recorded by triggers because stock changes are plain UPDATE statements that bypass JPA.
+CREATE TABLE inventory_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    entity VARCHAR(16) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    deleted BOOLEAN NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+    published_at TIMESTAMPTZ
+);
+
+CREATE INDEX idx_inventory_outbox_unpublished ON inventory_outbox (id) WHERE published_at IS NULL;
+CREATE INDEX idx_inventory_outbox_published_at ON inventory_outbox (published_at);
+
+-- Arguments: the entity name to record and the table's id column
+CREATE FUNCTION inventory_outbox_record() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO inventory_outbox (entity, entity_id, deleted)
+        VALUES (TG_ARGV[0], (to_jsonb(OLD) ->> TG_ARGV[1])::bigint, TRUE);
+    ELSE
+        INSERT INTO inventory_outbox (entity, entity_id, deleted)
+        VALUES (TG_ARGV[0], (to_jsonb(NEW) ->> TG_ARGV[1])::bigint, FALSE);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER product_outbox
+    AFTER INSERT OR UPDATE OR DELETE ON product
+    FOR EACH ROW EXECUTE FUNCTION inventory_outbox_record('product', 'product_id');
+
+CREATE TRIGGER product_category_outbox
+    AFTER INSERT OR UPDATE OR DELETE ON product_category
+    FOR EACH ROW EXECUTE FUNCTION inventory_outbox_record('category', 'category_id');
@@ -0,0 +1,26 @@
+package com.vaderpos.inventory;
+
+import java.io.IOException;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+// Boots a throwaway PostgreSQL instance for tests, so the native stock queries
+// run against the same dialect as production. Picked up by component scanning.
+@Configuration
+public class EmbeddedPostgresConfig {
+
+    @Bean(destroyMethod = "close")
+    public EmbeddedPostgres embeddedPostgres() throws IOException {
+        return EmbeddedPostgres.start();
+    }
+
+    @Bean
+    public DataSource dataSource(EmbeddedPostgres embeddedPostgres) {
+        return embeddedPostgres.getPostgresDatabase();
+    }
+}
@@ -0,0 +1,38 @@
+package com.vaderpos.inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springdoc.webmvc.api.OpenApiWebMvcResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StartupConfigTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Test
+    void apiDocsAreBuiltOnFirstRequest() throws Exception {
+        String[] names = beanFactory.getBeanNamesForType(OpenApiWebMvcResource.class, true, false);
+        assertEquals(1, names.length);
+        assertTrue(beanFactory.getBeanDefinition(names[0]).isLazyInit());
+        assertFalse(beanFactory.containsSingleton(names[0]));
+
+        mockMvc.perform(get("/v3/api-docs"))
+            .andExpect(status().isOk());
+        assertTrue(beanFactory.containsSingleton(names[0]));
+    }
+}
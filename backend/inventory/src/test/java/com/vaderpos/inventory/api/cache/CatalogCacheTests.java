@@ -0,0 +1,83 @@
+package com.vaderpos.inventory.api.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CatalogCacheTests {
+
+    // Values are "id:name" so the key can be read back from them
+    private final Map<Integer, String> table = new TreeMap<>(Map.of(1, "1:one", 2, "2:two"));
+    private final AtomicInteger fullLoads = new AtomicInteger();
+    private final List<Set<Integer>> partialLoads = new ArrayList<>();
+    private final CatalogCache<Integer, String> cache = new CatalogCache<>(
+        "test", value -> Integer.parseInt(value.split(":")[0]), new SimpleMeterRegistry());
+
+    @Test
+    void snapshotIsReusedUntilInvalidated() {
+        List<String> first = getAll();
+        assertSame(first, getAll());
+
+        table.put(2, "2:deux");
+        table.put(3, "3:trois");
+        cache.invalidateAll(List.of(2, 3));
+
+        assertEquals(List.of("1:one", "2:deux", "3:trois"), getAll());
+        assertEquals(1, fullLoads.get());
+        assertEquals(List.of(Set.of(2, 3)), partialLoads);
+    }
+
+    @Test
+    void knowsMissingIdsOnceFullyLoaded() {
+        getAll();
+        assertTrue(cache.get(9, id -> { throw new AssertionError("should not hit the database"); }).isEmpty());
+
+        table.remove(1);
+        cache.invalidate(1);
+        assertEquals(Optional.empty(), cache.get(1, id -> Optional.ofNullable(table.get(id))));
+        assertEquals(List.of("2:two"), getAll());
+    }
+
+    @Test
+    void writesDuringALoadAreReloaded() {
+        List<String> snapshot = cache.getAll(
+            () -> {
+                // A stock change commits while the table is being read
+                List<String> read = new ArrayList<>(table.values());
+                table.put(2, "2:deux");
+                cache.invalidate(2);
+                return read;
+            },
+            ids -> {
+                partialLoads.add(Set.copyOf(ids));
+                return ids.stream().map(table::get).toList();
+            });
+
+        assertEquals(List.of("1:one", "2:deux"), snapshot);
+        assertEquals(List.of(Set.of(2)), partialLoads);
+    }
+
+    private List<String> getAll() {
+        return cache.getAll(
+            () -> {
+                fullLoads.incrementAndGet();
+                return new ArrayList<>(table.values());
+            },
+            ids -> {
+                partialLoads.add(Set.copyOf(ids));
+                return ids.stream().filter(table::containsKey).map(table::get).toList();
+            });
+    }
+}
@@ -0,0 +1,71 @@
+package com.vaderpos.inventory.api.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductUpdateDTO;
+import com.vaderpos.inventory.api.service.IProductService;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductSearchTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IProductService productService;
+
+    // Writes reach the index through the outbox and the coalescer, so each step waits for them
+    @Test
+    void searchFollowsCommittedChanges() throws Exception {
+        Long productId = productService.createProduct(new ProductDTO(null, "Quizzical Quince", 3, 1.0, 1)).productId();
+        JSONArray hits = awaitHits("quizz", 1);
+        assertEquals(productId, hits.getJSONObject(0).getLong("productId"));
+        assertEquals(1, awaitHits("quizicle quince", 1).length());
+
+        productService.updateProduct(productId, new ProductUpdateDTO(productId, "Zesty Zucchini", null, null, null, null));
+        awaitHits("quizz", 0);
+        assertEquals(productId, awaitHits("zesty", 1).getJSONObject(0).getLong("productId"));
+        assertEquals(0, new JSONArray(mockMvc.perform(get("/api/products/search").param("q", "zesty").param("categoryId", "2"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString()).length());
+
+        productService.deleteProduct(productId);
+        awaitHits("zesty", 0);
+    }
+
+    @Test
+    void blankQueriesAreRejected() throws Exception {
+        mockMvc.perform(get("/api/products/search").param("q", " "))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products/search").param("q", "soap").param("limit", "500"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private JSONArray awaitHits(String query, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        JSONArray hits = search(query);
+        while (hits.length() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            hits = search(query);
+        }
+        assertEquals(expected, hits.length());
+        return hits;
+    }
+
+    private JSONArray search(String query) throws Exception {
+        return new JSONArray(mockMvc.perform(get("/api/products/search").param("q", query))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,42 @@
+package com.vaderpos.inventory.api.controller;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.IProductService;
+import com.vaderpos.inventory.exception.InsufficientStockException;
+
+@SpringBootTest(properties = "management.endpoints.web.exposure.include=prometheus")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PrometheusEndpointTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IProductService productService;
+
+    @Test
+    void inventoryMetricsAreScrapable() throws Exception {
+        Long productId = productService.createProduct(new ProductDTO(null, "Scarce", 1, 1.0, 1)).productId();
+        assertThrows(InsufficientStockException.class, () -> productService.reduceProductStock(productId, 2));
+
+        mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(Matchers.containsString("inventory_stock_rejected_total{operation=\"take\"}")))
+            .andExpect(content().string(Matchers.containsString("inventory_socket_sessions ")))
+            .andExpect(content().string(Matchers.containsString("inventory_socket_outbound_queued_max ")));
+    }
+}
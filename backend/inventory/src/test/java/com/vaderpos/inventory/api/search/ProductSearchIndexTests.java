@@ -0,0 +1,88 @@
+package com.vaderpos.inventory.api.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.IProductService;
+
+class ProductSearchIndexTests {
+
+    private final IProductService productService = mock(IProductService.class);
+    private final ProductSearchIndex index = new ProductSearchIndex(productService);
+
+    @BeforeEach
+    void setUp() {
+        when(productService.getAllProducts()).thenReturn(List.of(
+            new ProductDTO(1L, "Safeguard Soap", 10, 1.5, 1),
+            new ProductDTO(2L, "Sausage Roll", 5, 2.0, 2),
+            new ProductDTO(3L, "Crème Brûlée", 3, 4.0, 2),
+            new ProductDTO(4L, "Hand Soap Refill", 8, 3.0, 1),
+            new ProductDTO(5L, "Salt", 40, 0.5, 2)));
+        index.build();
+    }
+
+    @Test
+    void prefixesMatchTheStartOfAnyWord() {
+        assertEquals(List.of(5L, 2L, 1L), ids(index.search("sa", null, 10)));
+        assertEquals(List.of(1L, 4L), ids(index.search("soap", null, 10)));
+        assertEquals(List.of(4L), ids(index.search("hand so", null, 10)));
+        assertEquals(List.of(3L), ids(index.search("creme brul", null, 10)));
+    }
+
+    @Test
+    void typosStillFindTheProduct() {
+        assertEquals(1L, ids(index.search("safgaurd", null, 10)).get(0));
+        assertEquals(2L, ids(index.search("sausag rol", null, 10)).get(0));
+    }
+
+    @Test
+    void resultsAreFilteredByCategoryAndCut() {
+        assertEquals(List.of(5L, 2L), ids(index.search("sa", 2, 10)));
+        assertEquals(List.of(5L), ids(index.search("sa", null, 1)));
+        assertTrue(index.search("zz", null, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> index.search("  -- ", null, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.search("sa", null, 0));
+    }
+
+    @Test
+    void changeBatchesKeepTheIndexCurrent() {
+        index.onChangeBatch(Set.of(2L), Set.of(), Map.of(2L, new ProductDTO(2L, "Pork Pie", 4, 2.0, 2)));
+        assertEquals(List.of(5L, 1L), ids(index.search("sa", null, 10)));
+        assertEquals(List.of(2L), ids(index.search("pie", null, 10)));
+
+        // Only the stock moved: the hit carries the new quantity
+        index.onChangeBatch(Set.of(2L), Set.of(), Map.of(2L, new ProductDTO(2L, "Pork Pie", 1, 2.0, 2)));
+        assertEquals(1, index.search("pork", null, 10).get(0).quantity());
+
+        // Gone by the time the batch was read
+        index.onChangeBatch(Set.of(4L), Set.of(), Map.of());
+        assertEquals(List.of(1L), ids(index.search("soap", null, 10)));
+
+        index.onDeletes(Set.of(1L), Set.of());
+        assertEquals(List.of(5L), ids(index.search("sa", null, 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void deletesBeforeTheBuildAreNotBroughtBack() {
+        ProductSearchIndex fresh = new ProductSearchIndex(productService);
+        fresh.onDeletes(Set.of(5L), Set.of());
+        fresh.build();
+        assertEquals(List.of(2L, 1L), ids(fresh.search("sa", null, 10)));
+    }
+
+    private static List<Long> ids(List<ProductDTO> products) {
+        return products.stream().map(ProductDTO::productId).toList();
+    }
+}
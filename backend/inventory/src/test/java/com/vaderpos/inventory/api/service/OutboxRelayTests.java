@@ -0,0 +1,104 @@
+package com.vaderpos.inventory.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductUpdateDTO;
+import com.vaderpos.inventory.api.model.Product;
+import com.vaderpos.inventory.api.repository.IProductRepository;
+import com.vaderpos.inventory.socket.ChangeListener;
+
+// The scheduled relay is pushed out of the way so the test decides when events are published
+@SpringBootTest(properties = "inventory.outbox.poll-interval-ms=3600000")
+class OutboxRelayTests {
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private IProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ChangeListener listener = mock(ChangeListener.class);
+
+    @BeforeEach
+    void setUp() {
+        outboxRelay.setChangeListener(mock(ChangeListener.class));
+        outboxRelay.relay();
+        outboxRelay.setChangeListener(listener);
+    }
+
+    @Test
+    void publishesCommittedWritesInOrder() {
+        Long id = productService.createProduct(new ProductDTO(null, "Outboxed", 5, 1.0, 1)).productId();
+        productService.reduceProductStock(id, 1);
+        productService.updateProduct(id, new ProductUpdateDTO(null, "Renamed", null, null, null, null));
+        productService.deleteProduct(id);
+
+        assertEquals(4, outboxRelay.relay());
+
+        // Create, take and rename collapse into one run of changes ahead of the delete
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onProductsChanged(List.of(id));
+        inOrder.verify(listener).onProductDeleted(id);
+        inOrder.verifyNoMoreInteractions();
+        assertEquals(0, outboxRelay.relay());
+    }
+
+    @Test
+    void rolledBackWritesLeaveNoEvent() {
+        Long id = transactionTemplate.execute(status -> {
+            Product product = new Product();
+            product.setProductName("Never committed");
+            product.setPrice(BigDecimal.ONE);
+            product.setCategoryId(1);
+            Long savedId = productRepository.save(product).getProductId();
+            productRepository.flush();
+            status.setRollbackOnly();
+            return savedId;
+        });
+
+        Integer events = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM inventory_outbox WHERE entity = 'product' AND entity_id = ?", Integer.class, id);
+        assertEquals(0, events);
+        assertEquals(0, outboxRelay.relay());
+    }
+
+    @Test
+    void failedPublishIsRetried() {
+        Long id = productService.createProduct(new ProductDTO(null, "Retried", 5, 1.0, 1)).productId();
+        doThrow(new IllegalStateException("listener down")).when(listener).onProductsChanged(anyList());
+
+        assertThrows(IllegalStateException.class, () -> outboxRelay.relay());
+
+        ChangeListener recovered = mock(ChangeListener.class);
+        outboxRelay.setChangeListener(recovered);
+        assertEquals(1, outboxRelay.relay());
+        verify(recovered).onProductsChanged(List.of(id));
+    }
+}
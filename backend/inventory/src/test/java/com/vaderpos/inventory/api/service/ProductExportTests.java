@@ -0,0 +1,72 @@
+package com.vaderpos.inventory.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.export.ProductExportWriter;
+
+@SpringBootTest
+class ProductExportTests {
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void incrementalExportOnlyHasRowsChangedSince() throws Exception {
+        Long untouched = productService.createProduct(new ProductDTO(null, "Untouched", 5, 1.0, 1)).productId();
+        Long restocked = productService.createProduct(new ProductDTO(null, "Restocked", 5, 1.0, 1)).productId();
+        Thread.sleep(5);
+        Instant since = Instant.now();
+        Thread.sleep(5);
+        // Stock changes are plain UPDATEs, the trigger still has to stamp them
+        productService.returnProductStock(restocked, 3);
+
+        List<ProductDTO> exported = new ArrayList<>();
+        productService.exportProducts(since, exported::add);
+
+        List<Long> ids = exported.stream().map(ProductDTO::productId).toList();
+        assertTrue(ids.contains(restocked));
+        assertFalse(ids.contains(untouched));
+
+        List<ProductDTO> everything = new ArrayList<>();
+        productService.exportProducts(null, everything::add);
+        assertTrue(everything.stream().anyMatch(p -> p.productId().equals(untouched)));
+    }
+
+    @Test
+    void writesCsvAndNdjsonRows() throws Exception {
+        ProductDTO product = new ProductDTO(7L, "Soap, \"large\"", 3, 2.5, 1);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        ProductExportWriter csvWriter = new ProductExportWriter(ProductExportWriter.Format.CSV, csv, objectMapper);
+        csvWriter.accept(product);
+        csvWriter.flush();
+        assertEquals("productId,productName,quantity,price,categoryId\n7,\"Soap, \"\"large\"\"\",3,2.5,1\n",
+            csv.toString(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        ProductExportWriter ndjsonWriter = new ProductExportWriter(ProductExportWriter.Format.NDJSON, ndjson, objectMapper);
+        ndjsonWriter.accept(product);
+        ndjsonWriter.accept(product);
+        ndjsonWriter.flush();
+        String[] lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(product, objectMapper.readValue(lines[0], ProductDTO.class));
+    }
+}
@@ -0,0 +1,94 @@
+package com.vaderpos.inventory.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ImportReportDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.export.ProductImportReader;
+import com.vaderpos.inventory.api.repository.ICategoryRepository;
+
+@SpringBootTest(properties = "inventory.import.batch-size=7")
+class ProductImportTests {
+
+    // A category of its own so the imported rows can be counted
+    private static final int CATEGORY_ID = 4301;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private ICategoryRepository categoryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        if (!categoryRepository.existsById(CATEGORY_ID)) {
+            categoryService.createCategory(new CategoryDTO(CATEGORY_ID, "Import"));
+        }
+    }
+
+    @Test
+    void importsCsvAcrossSeveralBatches() throws Exception {
+        StringBuilder csv = new StringBuilder("productName,quantity,price,categoryId\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append("\"Bulk, item ").append(i).append("\",").append(i).append(",1.5,").append(CATEGORY_ID).append('\n');
+        }
+
+        ImportReportDTO report = productService.importProducts(ProductImportReader.csv(stream(csv.toString())));
+
+        assertEquals(20, report.imported());
+        List<ProductDTO> imported = productsInCategory();
+        assertEquals(20, imported.size());
+        assertTrue(imported.stream().anyMatch(p -> p.productName().equals("Bulk, item 13") && p.quantity() == 13));
+        // Ids come from the pooled sequence, and a later single insert must not collide with them
+        ProductDTO single = productService.createProduct(new ProductDTO(null, "After import", 1, 1.0, CATEGORY_ID));
+        assertTrue(imported.stream().noneMatch(p -> p.productId().equals(single.productId())));
+    }
+
+    @Test
+    void unknownCategoryRollsBackTheWholeImport() throws Exception {
+        String json = "[{\"productName\":\"Fine\",\"quantity\":1,\"price\":2.0,\"categoryId\":" + CATEGORY_ID + "},"
+            + "{\"productName\":\"Orphan\",\"quantity\":1,\"price\":2.0,\"categoryId\":-1}]";
+        int before = productsInCategory().size();
+
+        Iterator<ProductDTO> rows = ProductImportReader.json(stream(json), objectMapper);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> productService.importProducts(rows));
+
+        assertTrue(e.getMessage().startsWith("Row 2"));
+        assertEquals(before, productsInCategory().size());
+    }
+
+    private List<ProductDTO> productsInCategory() {
+        List<ProductDTO> products = new ArrayList<>();
+        productService.exportProducts(null, product -> {
+            if (product.categoryId() == CATEGORY_ID) {
+                products.add(product);
+            }
+        });
+        return products;
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
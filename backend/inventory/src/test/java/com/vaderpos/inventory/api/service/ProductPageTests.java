@@ -0,0 +1,104 @@
+package com.vaderpos.inventory.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.CursorPageDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductQueryDTO;
+import com.vaderpos.inventory.api.repository.ICategoryRepository;
+
+@SpringBootTest
+class ProductPageTests {
+
+    // A category of its own so products created by other tests do not show up
+    private static final int CATEGORY_ID = 4201;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private ICategoryRepository categoryRepository;
+
+    @BeforeEach
+    void setUp() {
+        if (!categoryRepository.existsById(CATEGORY_ID)) {
+            categoryService.createCategory(new CategoryDTO(CATEGORY_ID, "Paging"));
+            // Prices repeat so paging has to break ties by id
+            double[] prices = { 5.0, 1.0, 3.0, 3.0, 2.0, 3.0, 4.0 };
+            for (int i = 0; i < prices.length; i++) {
+                productService.createProduct(new ProductDTO(null, (i % 2 == 0 ? "Soap " : "Shampoo ") + i, i * 10, prices[i], CATEGORY_ID));
+            }
+        }
+    }
+
+    @Test
+    void pagesThroughEveryProductOnceInPriceOrder() {
+        ProductQueryDTO query = new ProductQueryDTO(CATEGORY_ID, null, null, null, "price", "desc");
+
+        List<ProductDTO> seen = readAll(query, 2);
+
+        assertEquals(7, seen.size());
+        for (int i = 1; i < seen.size(); i++) {
+            ProductDTO previous = seen.get(i - 1);
+            ProductDTO current = seen.get(i);
+            boolean ordered = previous.price() > current.price()
+                || (previous.price() == current.price() && previous.productId() > current.productId());
+            assertTrue(ordered, "out of order at " + i);
+        }
+    }
+
+    @Test
+    void filtersByNamePrefixAndStock() {
+        ProductQueryDTO query = new ProductQueryDTO(CATEGORY_ID, "soap", 10, 50, null, null);
+
+        List<ProductDTO> seen = readAll(query, 1);
+
+        // "Soap 2" and "Soap 4" have 20 and 40 in stock; "Soap 0" and "Soap 6" fall outside 10..50
+        assertEquals(List.of("Soap 2", "Soap 4"), seen.stream().map(ProductDTO::productName).toList());
+    }
+
+    @Test
+    void rejectsCursorFromAnotherOrder() {
+        ProductQueryDTO byPrice = new ProductQueryDTO(CATEGORY_ID, null, null, null, "price", "asc");
+        String cursor = productService.getProductPage(byPrice, null, 1).nextCursor();
+        assertNotNull(cursor);
+
+        ProductQueryDTO byQuantity = new ProductQueryDTO(CATEGORY_ID, null, null, null, "quantity", "asc");
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductPage(byQuantity, cursor, 1));
+    }
+
+    @Test
+    void pagesCategoriesById() {
+        CursorPageDTO<CategoryDTO> page = categoryService.getCategoryPage("pag", null, 1);
+
+        assertEquals(List.of(new CategoryDTO(CATEGORY_ID, "Paging")), page.items());
+        assertNull(page.nextCursor());
+    }
+
+    private List<ProductDTO> readAll(ProductQueryDTO query, int limit) {
+        List<ProductDTO> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<ProductDTO> page = productService.getProductPage(query, cursor, limit);
+            seen.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+}
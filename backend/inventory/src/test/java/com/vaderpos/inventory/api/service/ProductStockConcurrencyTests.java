@@ -0,0 +1,93 @@
+package com.vaderpos.inventory.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.exception.InsufficientStockException;
+import com.vaderpos.inventory.exception.ProductNotFoundException;
+
+@SpringBootTest
+class ProductStockConcurrencyTests {
+
+    private static final int THREADS = 32;
+    private static final int TAKES_PER_THREAD = 20;
+    private static final int INITIAL_STOCK = 250;
+
+    @Autowired
+    private IProductService productService;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = productService.createProduct(new ProductDTO(null, "Hammered SKU", INITIAL_STOCK, 10.0, 1)).productId();
+    }
+
+    @Test
+    void concurrentTakesNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Set<Integer> remainingSeen = ConcurrentHashMap.newKeySet();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < TAKES_PER_THREAD; j++) {
+                    try {
+                        remainingSeen.add(productService.reduceProductStock(productId, 1));
+                        taken.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(INITIAL_STOCK, taken.get());
+        assertEquals(THREADS * TAKES_PER_THREAD - INITIAL_STOCK, rejected.get());
+        assertEquals(0, productService.checkProductStock(productId));
+        // Every successful take saw a distinct remaining value: no two tills got the same unit
+        assertEquals(INITIAL_STOCK, remainingSeen.size());
+    }
+
+    @Test
+    void returnAddsStockAndReportsRemaining() {
+        assertEquals(INITIAL_STOCK - 5, productService.reduceProductStock(productId, 5));
+        assertEquals(INITIAL_STOCK, productService.returnProductStock(productId, 5));
+    }
+
+    @Test
+    void rejectsInsufficientStockAndMissingProduct() {
+        assertThrows(InsufficientStockException.class, () -> productService.reduceProductStock(productId, INITIAL_STOCK + 1));
+        assertEquals(INITIAL_STOCK, productService.checkProductStock(productId));
+        assertThrows(ProductNotFoundException.class, () -> productService.reduceProductStock(-1L, 1));
+        assertThrows(ProductNotFoundException.class, () -> productService.returnProductStock(-1L, 1));
+        assertThrows(IllegalArgumentException.class, () -> productService.reduceProductStock(productId, 0));
+    }
+}
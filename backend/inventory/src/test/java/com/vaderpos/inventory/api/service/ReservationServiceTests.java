@@ -0,0 +1,97 @@
+package com.vaderpos.inventory.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.dto.ProductUpdateDTO;
+import com.vaderpos.inventory.api.dto.ReservationDTO;
+import com.vaderpos.inventory.api.dto.StockChangeDTO;
+import com.vaderpos.inventory.exception.InsufficientStockException;
+import com.vaderpos.inventory.exception.ReservationNotFoundException;
+
+@SpringBootTest
+class ReservationServiceTests {
+
+    @Autowired
+    private IReservationService reservationService;
+
+    @Autowired
+    private IProductService productService;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = productService.createProduct(new ProductDTO(null, "Held", 5, 1.0, 1)).productId();
+    }
+
+    @Test
+    void holdsReduceAvailableStockWithoutTouchingQuantity() {
+        ReservationDTO first = reservationService.holdProduct(productId, 3, null);
+        assertEquals(2, reservationService.getAvailableStock(productId));
+        assertEquals(5, productService.checkProductStock(productId));
+        assertThrows(InsufficientStockException.class, () -> reservationService.holdProduct(productId, 3, null));
+
+        reservationService.releaseHold(first.reservationId());
+        assertEquals(5, reservationService.getAvailableStock(productId));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.releaseHold(first.reservationId()));
+    }
+
+    @Test
+    void confirmTakesHeldStock() {
+        ReservationDTO hold = reservationService.holdProduct(productId, 4, null);
+        assertEquals(1, reservationService.confirmHold(hold.reservationId()));
+        assertEquals(0, reservationService.getHeldStock(productId));
+        assertEquals(1, reservationService.getAvailableStock(productId));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.confirmHold(hold.reservationId()));
+    }
+
+    @Test
+    void failedConfirmKeepsTheHold() {
+        ReservationDTO hold = reservationService.holdProduct(productId, 4, null);
+        productService.updateProduct(productId, new ProductUpdateDTO(productId, "Held", 2, 1.0, 1, null));
+
+        assertThrows(InsufficientStockException.class, () -> reservationService.confirmHold(hold.reservationId()));
+        assertEquals(4, reservationService.getHeldStock(productId));
+        assertEquals(2, productService.checkProductStock(productId));
+
+        reservationService.releaseHold(hold.reservationId());
+        assertEquals(0, reservationService.getHeldStock(productId));
+    }
+
+    @Test
+    void plainTakesLeaveHeldStockAlone() {
+        ReservationDTO hold = reservationService.holdProduct(productId, 4, null);
+
+        InsufficientStockException single = assertThrows(InsufficientStockException.class,
+            () -> productService.reduceProductStock(productId, 2));
+        assertTrue(single.getMessage().endsWith("Available: 1"));
+        assertThrows(InsufficientStockException.class,
+            () -> productService.reduceProductStocks(List.of(new StockChangeDTO(productId, 2))));
+        assertEquals(5, productService.checkProductStock(productId));
+
+        assertEquals(4, productService.reduceProductStock(productId, 1));
+        assertEquals(0, reservationService.confirmHold(hold.reservationId()));
+    }
+
+    @Test
+    void sweeperReleasesExpiredHolds() throws InterruptedException {
+        ReservationDTO hold = reservationService.holdProduct(productId, 5, 1L);
+        assertEquals(0, reservationService.getAvailableStock(productId));
+
+        Thread.sleep(1100);
+        reservationService.releaseExpiredHolds();
+
+        assertEquals(5, reservationService.getAvailableStock(productId));
+        assertThrows(ReservationNotFoundException.class, () -> reservationService.confirmHold(hold.reservationId()));
+    }
+}
@@ -0,0 +1,106 @@
+package com.vaderpos.inventory.socket;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.IProductService;
+
+class ChangeCoalescerTests {
+
+    private final ChangeBatchListener target = mock(ChangeBatchListener.class);
+    private final IProductService productService = mock(IProductService.class);
+    private ChangeCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() {
+        coalescer.destroy();
+    }
+
+    @Test
+    void repeatedChangesCollapseIntoOneBatch() {
+        coalescer = new ChangeCoalescer(target, productService, 60_000, 100);
+        ProductDTO first = new ProductDTO(1L, "First", 1, 1.0, 1);
+        ProductDTO third = new ProductDTO(3L, "Third", 3, 1.0, 1);
+        when(productService.getProducts(anyList())).thenReturn(List.of(first, third));
+
+        coalescer.onProductChanged(1L);
+        coalescer.onProductChanged(2L);
+        coalescer.onProductChanged(1L);
+        coalescer.onProductsChanged(List.of(2L, 3L));
+        coalescer.onCategoryChanged(5);
+        verify(target, never()).onChangeBatch(Set.of(1L, 2L, 3L), Set.of(5), Map.of());
+
+        coalescer.flush();
+        coalescer.flush();
+        // One read for the whole batch; 2 is gone by then
+        verify(productService).getProducts(anyList());
+        verify(target).onChangeBatch(Set.of(1L, 2L, 3L), Set.of(5), Map.of(1L, first, 3L, third));
+        verifyNoMoreInteractions(target);
+    }
+
+    @Test
+    void deletesReplacePendingUpdatesAndFollowTheBatch() {
+        coalescer = new ChangeCoalescer(target, productService, 60_000, 100);
+
+        coalescer.onProductChanged(1L);
+        coalescer.onProductChanged(2L);
+        coalescer.onProductDeleted(2L);
+        coalescer.onCategoryDeleted(5);
+
+        coalescer.flush();
+        InOrder inOrder = inOrder(target);
+        inOrder.verify(target).onChangeBatch(Set.of(1L), Set.of(), Map.of());
+        inOrder.verify(target).onDeletes(Set.of(2L), Set.of(5));
+        verifyNoMoreInteractions(target);
+    }
+
+    @Test
+    void recreatingADeletedIdCancelsItsTombstone() {
+        coalescer = new ChangeCoalescer(target, productService, 60_000, 100);
+        ProductDTO recreated = new ProductDTO(2L, "Recreated", 1, 1.0, 5);
+        when(productService.getProducts(anyList())).thenReturn(List.of(recreated));
+
+        coalescer.onCategoryDeleted(5);
+        coalescer.onProductDeleted(2L);
+        coalescer.onCategoryChanged(5);
+        coalescer.onProductChanged(2L);
+
+        coalescer.flush();
+        verify(target).onChangeBatch(Set.of(2L), Set.of(5), Map.of(2L, recreated));
+        verifyNoMoreInteractions(target);
+    }
+
+    @Test
+    void flushesAfterWindow() {
+        coalescer = new ChangeCoalescer(target, productService, 20, 100);
+
+        coalescer.onProductChanged(1L);
+
+        verify(target, timeout(2000)).onChangeBatch(Set.of(1L), Set.of(), Map.of());
+    }
+
+    @Test
+    void flushesEarlyWhenBatchIsFull() {
+        coalescer = new ChangeCoalescer(target, productService, 60_000, 3);
+
+        coalescer.onProductsChanged(List.of(1L, 2L));
+        coalescer.onCategoryChanged(9);
+
+        verify(target, timeout(2000)).onChangeBatch(Set.of(1L, 2L), Set.of(9), Map.of());
+    }
+}
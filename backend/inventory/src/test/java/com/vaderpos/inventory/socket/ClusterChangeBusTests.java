@@ -0,0 +1,143 @@
+package com.vaderpos.inventory.socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.repository.IOutboxRepository;
+import com.vaderpos.inventory.api.service.ICategoryService;
+import com.vaderpos.inventory.api.service.IProductService;
+import com.vaderpos.inventory.api.service.OutboxRelay;
+
+// Two buses on the embedded database stand in for two instances. The scheduled relay is pushed
+// out of the way so a test can choose which instance claims the outbox.
+@SpringBootTest(properties = "inventory.outbox.poll-interval-ms=3600000")
+class ClusterChangeBusTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private IOutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    private final ChangeListener localA = mock(ChangeListener.class);
+    private final ChangeListener localB = mock(ChangeListener.class);
+    private ClusterChangeBus nodeA;
+    private ClusterChangeBus nodeB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        nodeA = new ClusterChangeBus(localA, productService, categoryService, dataSource, "node-a", true);
+        nodeB = new ClusterChangeBus(localB, productService, categoryService, dataSource, "node-b", true);
+        nodeA.start();
+        nodeB.start();
+        // LISTEN runs on the bus threads; give them a moment to subscribe
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.destroy();
+        nodeB.destroy();
+    }
+
+    @Test
+    void otherNodesReceiveCommittedChangesAndSendersSkipTheirOwn() {
+        transactionTemplate.executeWithoutResult(status -> {
+            nodeA.onProductsChanged(List.of(1L, 2L));
+            nodeA.onCategoryDeleted(7);
+        });
+
+        verify(localB, timeout(5000)).onProductsChanged(List.of(1L, 2L));
+        verify(localB, timeout(5000)).onCategoryDeleted(7);
+        // Node A published locally once, and ignores its own notification
+        verify(localA, after(500).times(1)).onProductsChanged(List.of(1L, 2L));
+    }
+
+    @Test
+    void rolledBackChangesAreNotSent() {
+        transactionTemplate.executeWithoutResult(status -> {
+            nodeA.onProductDeleted(42L);
+            status.setRollbackOnly();
+        });
+
+        verify(localB, after(1000).never()).onProductDeleted(42L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void longIdListsAreSplitAcrossNotifications() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1_000_000_000L; id < 1_000_002_000L; id++) {
+            ids.add(id);
+        }
+        transactionTemplate.executeWithoutResult(status -> nodeA.onProductsChanged(ids));
+
+        // Several notifications that add up to the whole list, in order
+        Thread.sleep(2000);
+        ArgumentCaptor<List<Long>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(localB, atLeast(2)).onProductsChanged(chunks.capture());
+        List<Long> received = new ArrayList<>();
+        chunks.getAllValues().forEach(received::addAll);
+        assertEquals(ids, received);
+    }
+
+    // Node A takes the write; node C's relay claims its outbox rows. C's caches only know of the
+    // change through the bus, so C must evict before it broadcasts or indexes anything.
+    @Test
+    void theClaimingNodeEvictsWritesMadeElsewhere() {
+        outboxRelay.setChangeListener(mock(ChangeListener.class));
+        outboxRelay.relay();
+        categoryService.createCategory(new CategoryDTO(4701, "Claimed elsewhere"));
+        Long productId = productService.createProduct(new ProductDTO(null, "Claimed", 1, 1.0, 4701)).productId();
+        productService.deleteProduct(productId);
+
+        IProductService productServiceC = mock(IProductService.class);
+        ICategoryService categoryServiceC = mock(ICategoryService.class);
+        ChangeListener localC = mock(ChangeListener.class);
+        ClusterChangeBus nodeC = new ClusterChangeBus(localC, productServiceC, categoryServiceC, dataSource, "node-c", false);
+        OutboxRelay relayC = new OutboxRelay(outboxRepository, transactionTemplate, 500, 24);
+        relayC.setChangeListener(nodeC);
+        assertEquals(3, relayC.relay());
+
+        InOrder inOrder = inOrder(productServiceC, categoryServiceC, localC);
+        inOrder.verify(categoryServiceC).evictCategory(4701);
+        inOrder.verify(localC).onCategoryChanged(4701);
+        inOrder.verify(productServiceC).evictProducts(List.of(productId));
+        inOrder.verify(localC).onProductsChanged(List.of(productId));
+        inOrder.verify(productServiceC).evictProducts(List.of(productId));
+        inOrder.verify(localC).onProductDeleted(productId);
+    }
+}
@@ -0,0 +1,117 @@
+package com.vaderpos.inventory.socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboundDispatcherTests {
+
+    // Holds drain tasks until the test runs them, standing in for a sender that cannot keep up
+    private final List<Runnable> pendingSends = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void sendDoesNotWriteOnCallingThread() throws Exception {
+        OutboundDispatcher dispatcher = dispatcher(OutboundDispatcher.OverflowPolicy.DISCONNECT);
+        WebSocketSession session = openSession(dispatcher);
+
+        dispatcher.send(session, new TextMessage("a"));
+        dispatcher.send(session, new TextMessage("b"));
+        verify(session, never()).sendMessage(any());
+        assertEquals(1, pendingSends.size());
+
+        runPendingSends();
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(sent.capture());
+        assertEquals(List.of("a", "b"), sent.getAllValues().stream().map(TextMessage::getPayload).toList());
+        assertEquals(0.0, meterRegistry.get("inventory.socket.outbound.queued").gauge().value());
+    }
+
+    @Test
+    void dropPolicyReplacesTheBacklogWithAResync() throws Exception {
+        OutboundDispatcher dispatcher = dispatcher(OutboundDispatcher.OverflowPolicy.DROP);
+        WebSocketSession session = openSession(dispatcher);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.send(session, new TextMessage("frame-" + i));
+        }
+        runPendingSends();
+
+        // frame-3 overflowed the limit of 3; frame-4 came after the resync and still counts
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(sent.capture());
+        assertEquals(List.of(OutboundDispatcher.RESYNC.getPayload(), "frame-4"),
+            sent.getAllValues().stream().map(TextMessage::getPayload).toList());
+        assertEquals(4.0, meterRegistry.get("inventory.socket.outbound.dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("inventory.socket.outbound.queued").gauge().value());
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void dropPolicyKeepsReplies() throws Exception {
+        OutboundDispatcher dispatcher = dispatcher(OutboundDispatcher.OverflowPolicy.DROP);
+        WebSocketSession session = openSession(dispatcher);
+
+        dispatcher.send(session, new TextMessage("frame-0"));
+        dispatcher.reply(session, new TextMessage("taken"));
+        dispatcher.send(session, new TextMessage("frame-1"));
+        dispatcher.send(session, new TextMessage("frame-2"));
+        runPendingSends();
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(sent.capture());
+        assertEquals(List.of("taken", OutboundDispatcher.RESYNC.getPayload()),
+            sent.getAllValues().stream().map(TextMessage::getPayload).toList());
+        assertEquals(3.0, meterRegistry.get("inventory.socket.outbound.dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("inventory.socket.outbound.queued").gauge().value());
+    }
+
+    @Test
+    void disconnectPolicyEvictsSlowConsumer() throws Exception {
+        OutboundDispatcher dispatcher = dispatcher(OutboundDispatcher.OverflowPolicy.DISCONNECT);
+        WebSocketSession session = openSession(dispatcher);
+
+        for (int i = 0; i < 4; i++) {
+            dispatcher.send(session, new TextMessage("frame-" + i));
+        }
+
+        ArgumentCaptor<CloseStatus> status = ArgumentCaptor.forClass(CloseStatus.class);
+        verify(session).close(status.capture());
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), status.getValue().getCode());
+        assertEquals(1.0, meterRegistry.get("inventory.socket.sessions.evicted").counter().count());
+        assertEquals(0.0, meterRegistry.get("inventory.socket.outbound.queued").gauge().value());
+    }
+
+    private OutboundDispatcher dispatcher(OutboundDispatcher.OverflowPolicy policy) {
+        return new OutboundDispatcher(pendingSends::add, 3, 1 << 20, 5000, policy, meterRegistry);
+    }
+
+    private void runPendingSends() {
+        while (!pendingSends.isEmpty()) {
+            pendingSends.remove(0).run();
+        }
+    }
+
+    private static WebSocketSession openSession(OutboundDispatcher dispatcher) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("till-1");
+        when(session.isOpen()).thenReturn(true);
+        dispatcher.register(session);
+        return session;
+    }
+}
@@ -0,0 +1,318 @@
+package com.vaderpos.inventory.socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.service.ICategoryService;
+import com.vaderpos.inventory.api.service.IProductService;
+import com.vaderpos.inventory.api.service.IReservationService;
+import com.vaderpos.inventory.exception.InsufficientStockException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SocketConnectionHandlerTests {
+
+    private final IProductService productService = mock(IProductService.class);
+    private final ICategoryService categoryService = mock(ICategoryService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // A direct executor keeps sending on the test thread
+    private final OutboundDispatcher outboundDispatcher = new OutboundDispatcher(Runnable::run,
+        100, 1 << 20, 5000, OutboundDispatcher.OverflowPolicy.DISCONNECT, meterRegistry);
+    private final ChangeLog<EncodedFrame> changeLog = new ChangeLog<>(2);
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private final SocketConnectionHandler handler = new SocketConnectionHandler(
+        productService, categoryService, mock(IReservationService.class), outboundDispatcher, sessionRegistry,
+        new SocketMetrics(meterRegistry, sessionRegistry), changeLog);
+
+    private final ProductDTO soap = new ProductDTO(4L, "Safeguard", 10, 100.0, 1);
+    private final ProductDTO detergent = new ProductDTO(5L, "Surf", 6, 1000.0, 2);
+
+    @BeforeEach
+    void setUp() {
+        when(productService.getAllProducts()).thenReturn(List.of(soap, detergent));
+        when(productService.getProduct(4L)).thenReturn(Optional.of(soap));
+        when(productService.getProduct(5L)).thenReturn(Optional.of(detergent));
+        when(categoryService.getAllCategories()).thenReturn(List.of(new CategoryDTO(1, "Soap"), new CategoryDTO(2, "Detergent")));
+    }
+
+    @Test
+    void initialSyncReusesSerializedSnapshotUntilCatalogChanges() throws Exception {
+        WebSocketSession first = openSession("a");
+        WebSocketSession second = openSession("b");
+
+        List<TextMessage> firstFrames = sentFrames(first, 2);
+        List<TextMessage> secondFrames = sentFrames(second, 2);
+        assertSame(firstFrames.get(0), secondFrames.get(0));
+        assertSame(firstFrames.get(1), secondFrames.get(1));
+        verify(productService, times(1)).getAllProducts();
+
+        changeBatch(4L);
+        WebSocketSession third = openSession("c");
+        // The category snapshot is still the older one, so the batch after it is replayed on top
+        assertNotSame(firstFrames.get(0), sentFrames(third, 3).get(0));
+        verify(productService, times(2)).getAllProducts();
+    }
+
+    @Test
+    void batchIsBuiltOnceForAllSessionsWithTombstonesForDeletes() throws Exception {
+        WebSocketSession first = openSession("a");
+        WebSocketSession second = openSession("b");
+        when(productService.getProduct(7L)).thenReturn(Optional.empty());
+
+        changeBatch(4L, 7L);
+
+        List<TextMessage> firstFrames = sentFrames(first, 3);
+        List<TextMessage> secondFrames = sentFrames(second, 3);
+        assertSame(firstFrames.get(2), secondFrames.get(2));
+
+        JSONObject batch = new JSONObject(firstFrames.get(2).getPayload());
+        assertEquals("batch", batch.getString("updateType"));
+        assertEquals(1, batch.getJSONArray("updatedProducts").length());
+        assertEquals(4L, batch.getJSONArray("updatedProducts").getJSONObject(0).getLong("productId"));
+        assertEquals(1, batch.getJSONArray("deletedProductIds").length());
+        assertEquals(7L, batch.getJSONArray("deletedProductIds").getLong(0));
+        verify(productService, times(1)).getAllProducts();
+    }
+
+    @Test
+    void deletesAreSentAsIdOnlyEvents() throws Exception {
+        WebSocketSession session = openSession("a");
+
+        handler.onDeletes(Set.of(7L), Set.of(3));
+
+        List<TextMessage> frames = sentFrames(session, 4);
+        JSONObject productDeleted = new JSONObject(frames.get(2).getPayload());
+        assertEquals("productDeleted", productDeleted.getString("type"));
+        assertEquals(7L, productDeleted.getLong("productId"));
+        assertEquals(1L, productDeleted.getLong("seq"));
+        JSONObject categoryDeleted = new JSONObject(frames.get(3).getPayload());
+        assertEquals("categoryDeleted", categoryDeleted.getString("type"));
+        assertEquals(3, categoryDeleted.getInt("categoryId"));
+        // Nothing but initial sync ever sends the whole catalog
+        verify(productService, times(1)).getAllProducts();
+    }
+
+    @Test
+    void reconnectReplaysOnlyTheMissedChanges() throws Exception {
+        WebSocketSession first = openSession("a");
+        changeBatch(4L);
+        changeBatch(4L);
+        List<TextMessage> live = sentFrames(first, 4);
+        assertEquals(2L, new JSONObject(live.get(3).getPayload()).getLong("seq"));
+
+        WebSocketSession resumed = openSession("b", "?sinceSeq=1&epoch=" + changeLog.getEpoch());
+        List<TextMessage> replayed = sentFrames(resumed, 1);
+        assertSame(live.get(3), replayed.get(0));
+        verify(productService, times(1)).getAllProducts();
+    }
+
+    @Test
+    void reconnectFallsBackToSnapshotOnceChangesWereEvicted() throws Exception {
+        changeBatch(4L);
+        changeBatch(4L);
+        changeBatch(4L);
+
+        WebSocketSession behind = openSession("a", "?sinceSeq=0&epoch=" + changeLog.getEpoch());
+        JSONObject snapshot = new JSONObject(sentFrames(behind, 2).get(0).getPayload());
+        assertEquals("global", snapshot.getString("updateType"));
+        assertEquals(3L, snapshot.getLong("seq"));
+
+        // A sequence from another epoch (before a restart) is never trusted
+        WebSocketSession restarted = openSession("b", "?sinceSeq=3&epoch=1");
+        assertEquals("global", new JSONObject(sentFrames(restarted, 2).get(0).getPayload()).getString("updateType"));
+    }
+
+    @Test
+    void categorySubscribersOnlyReceiveTheirCategory() throws Exception {
+        WebSocketSession kitchen = openSession("a", "?categories=1");
+        WebSocketSession otherKitchen = openSession("b", "?categories=1");
+        WebSocketSession everything = openSession("c");
+
+        JSONObject snapshot = new JSONObject(sentFrames(kitchen, 2).get(0).getPayload());
+        assertEquals(1, snapshot.getJSONArray("products").length());
+        assertEquals(4L, snapshot.getJSONArray("products").getJSONObject(0).getLong("productId"));
+
+        changeBatch(5L);
+        sentFrames(kitchen, 2);
+        sentFrames(everything, 3);
+
+        changeBatch(4L, 5L);
+        List<TextMessage> kitchenFrames = sentFrames(kitchen, 3);
+        assertSame(kitchenFrames.get(2), sentFrames(otherKitchen, 3).get(2));
+        JSONObject batch = new JSONObject(kitchenFrames.get(2).getPayload());
+        assertEquals(1, batch.getJSONArray("updatedProducts").length());
+        assertEquals(4L, batch.getJSONArray("updatedProducts").getJSONObject(0).getLong("productId"));
+        assertEquals(2, new JSONObject(sentFrames(everything, 4).get(3).getPayload())
+            .getJSONArray("updatedProducts").length());
+    }
+
+    @Test
+    void productMovingOutOfACategoryIsATombstoneForItsSubscribers() throws Exception {
+        WebSocketSession kitchen = openSession("a", "?categories=1");
+        WebSocketSession till = openSession("b", "?products=4");
+
+        when(productService.getProduct(4L)).thenReturn(Optional.of(new ProductDTO(4L, "Safeguard", 10, 100.0, 2)));
+        changeBatch(4L);
+
+        JSONObject kitchenBatch = new JSONObject(sentFrames(kitchen, 3).get(2).getPayload());
+        assertEquals(0, kitchenBatch.getJSONArray("updatedProducts").length());
+        assertEquals(4L, kitchenBatch.getJSONArray("deletedProductIds").getLong(0));
+        // Still wanted by id, wherever it lives now
+        JSONObject tillBatch = new JSONObject(sentFrames(till, 3).get(2).getPayload());
+        assertEquals(2, tillBatch.getJSONArray("updatedProducts").getJSONObject(0).getInt("categoryId"));
+    }
+
+    @Test
+    void sessionsEndpointListsLiveSessionsWithWhatTheyWereSentAndAcknowledged() throws Exception {
+        WebSocketSession kitchen = openSession("a", "?categories=1");
+        WebSocketSession till = openSession("b");
+        WebSocketSession gone = openSession("c");
+        handler.afterConnectionClosed(gone, CloseStatus.NORMAL);
+
+        changeBatch(4L);
+        handler.handleMessage(till, new TextMessage("{\"action\":\"ack\",\"seq\":1}"));
+        // A late ack for something older does not move it back
+        handler.handleMessage(till, new TextMessage("{\"action\":\"ack\",\"seq\":0}"));
+
+        List<SocketSessionsEndpoint.SessionView> sessions =
+            new SocketSessionsEndpoint(sessionRegistry, outboundDispatcher).sessions();
+        assertEquals(List.of("a", "b"), sessions.stream().map(SocketSessionsEndpoint.SessionView::id).toList());
+
+        SocketSessionsEndpoint.SessionView kitchenView = sessions.get(0);
+        assertEquals("filtered", kitchenView.mode());
+        assertEquals(Set.of(1), kitchenView.categoryIds());
+        assertEquals(-1L, kitchenView.lastAckSeq());
+        assertEquals(3L, kitchenView.sentMessages());
+
+        SocketSessionsEndpoint.SessionView tillView = sessions.get(1);
+        assertEquals("all", tillView.mode());
+        assertEquals(1L, tillView.lastAckSeq());
+        List<TextMessage> tillFrames = sentFrames(till, 3);
+        assertEquals(tillFrames.stream().mapToLong(TextMessage::getPayloadLength).sum(), tillView.sentBytes());
+        assertEquals(0, tillView.queuedMessages());
+    }
+
+    @Test
+    void columnarSessionsShareOneCompactFrame() throws Exception {
+        WebSocketSession negotiated = openSession("a", "", "inventory.columnar");
+        WebSocketSession byParameter = openSession("b", "?format=columnar", null);
+        WebSocketSession verbose = openSession("c");
+
+        JSONObject snapshot = new JSONObject(sentFrames(negotiated, 2).get(0).getPayload());
+        JSONArray names = snapshot.getJSONObject("products").getJSONArray("productName");
+        assertEquals(2, names.length());
+        assertEquals("Surf", names.getString(1));
+        assertFalse(snapshot.has("timestamp"));
+
+        changeBatch(4L);
+        TextMessage compact = sentFrames(negotiated, 3).get(2);
+        assertSame(compact, sentFrames(byParameter, 3).get(2));
+        JSONObject batch = new JSONObject(compact.getPayload());
+        JSONArray ids = batch.getJSONObject("updatedProducts").getJSONArray("productId");
+        assertEquals(1, ids.length());
+        assertEquals(4L, ids.getLong(0));
+        assertEquals(1L, batch.getLong("seq"));
+
+        TextMessage full = sentFrames(verbose, 3).get(2);
+        assertEquals(4L, new JSONObject(full.getPayload()).getJSONArray("updatedProducts").getJSONObject(0).getLong("productId"));
+        assertTrue(compact.getPayloadLength() < full.getPayloadLength());
+    }
+
+    @Test
+    void actionsAndBroadcastsAreMetered() throws Exception {
+        WebSocketSession session = openSession("a");
+        openSession("b");
+        when(productService.reduceProductStock(4L, 50)).thenThrow(new InsufficientStockException(4L, 50, 10));
+
+        handler.handleMessage(session, new TextMessage("{\"action\":\"ping\"}"));
+        handler.handleMessage(session, new TextMessage("{\"action\":\"takeProduct\",\"productId\":4,\"quantity\":50}"));
+        handler.handleMessage(session, new TextMessage("{\"action\":\"anything\"}"));
+        changeBatch(4L);
+
+        assertEquals(1, meterRegistry.get("inventory.socket.action").tags("action", "ping", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("inventory.socket.action").tags("action", "takeProduct", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get("inventory.socket.action").tags("action", "unknown", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get("inventory.socket.broadcast").timer().count());
+        DistributionSummary bytes = meterRegistry.get("inventory.socket.broadcast.bytes").summary();
+        assertEquals(1, bytes.count());
+        assertEquals(sentFrames(session, 6).get(5).getPayloadLength(), (long) bytes.totalAmount());
+        assertEquals(2.0, meterRegistry.get("inventory.socket.sessions").gauge().value());
+    }
+
+    @Test
+    void changeLogOnlyReplaysWhatIsStillBuffered() {
+        ChangeLog<TextMessage> log = new ChangeLog<>(2);
+        TextMessage first = new TextMessage("1");
+        TextMessage second = new TextMessage("2");
+        TextMessage third = new TextMessage("3");
+        log.append(first);
+        log.append(second);
+        assertEquals(List.of(first, second), log.since(0));
+
+        log.append(third);
+        assertNull(log.since(0));
+        assertEquals(List.of(second, third), log.since(1));
+        assertEquals(List.of(), log.since(3));
+        assertNull(log.since(4));
+    }
+
+    private WebSocketSession openSession(String id) throws Exception {
+        return openSession(id, "");
+    }
+
+    private WebSocketSession openSession(String id, String query) throws Exception {
+        return openSession(id, query, null);
+    }
+
+    private WebSocketSession openSession(String id, String query, String subprotocol) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getAcceptedProtocol()).thenReturn(subprotocol);
+        when(session.getUri()).thenReturn(URI.create("ws://localhost/inventory-socket" + query));
+        when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static List<TextMessage> sentFrames(WebSocketSession session, int expected) throws Exception {
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(expected)).sendMessage(captor.capture());
+        return captor.getAllValues();
+    }
+
+    // What ChangeCoalescer hands over: the changed ids and the rows of those that still exist
+    private void changeBatch(Long... productIds) {
+        Map<Long, ProductDTO> products = new HashMap<>();
+        for (Long productId : productIds) {
+            productService.getProduct(productId).ifPresent(product -> products.put(productId, product));
+        }
+        handler.onChangeBatch(Set.of(productIds), Set.of(), products);
+    }
+}
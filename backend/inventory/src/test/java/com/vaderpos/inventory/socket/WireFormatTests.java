@@ -0,0 +1,137 @@
+package com.vaderpos.inventory.socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.vaderpos.inventory.api.dto.CategoryDTO;
+import com.vaderpos.inventory.api.dto.ProductDTO;
+import com.vaderpos.inventory.api.repository.ICategoryRepository;
+import com.vaderpos.inventory.api.service.ICategoryService;
+import com.vaderpos.inventory.api.service.IProductService;
+
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class WireFormatTests {
+
+    private static final int CATEGORY_ID = 4401;
+    private static final int PRODUCTS = 2000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ICategoryService categoryService;
+
+    @Autowired
+    private ICategoryRepository categoryRepository;
+
+    @BeforeEach
+    void setUp() {
+        if (!categoryRepository.existsById(CATEGORY_ID)) {
+            categoryService.createCategory(new CategoryDTO(CATEGORY_ID, "Wire format"));
+            productService.importProducts(IntStream.range(0, PRODUCTS)
+                .mapToObj(i -> new ProductDTO(null, "Product " + i, i % 50, 10.0 + i % 100, CATEGORY_ID))
+                .iterator());
+        }
+    }
+
+    // Negotiates both the subprotocol and permessage-deflate with the running server, and checks
+    // what each encoding costs for the full product list with and without compression
+    @Test
+    void compactFormatAndCompressionAreNegotiatedAtHandshake() throws Exception {
+        Client json = connect(null);
+        Client columnar = connect(WireFormat.COLUMNAR.getSubprotocol());
+
+        assertEquals(WireFormat.COLUMNAR.getSubprotocol(), columnar.session().getAcceptedProtocol());
+        assertTrue(columnar.session().getExtensions().stream()
+            .anyMatch(extension -> extension.getName().equals("permessage-deflate")));
+
+        String jsonSnapshot = json.next();
+        String columnarSnapshot = columnar.next();
+        int products = new JSONObject(jsonSnapshot).getJSONArray("products").length();
+        assertTrue(products >= PRODUCTS);
+        assertEquals(products,
+            new JSONObject(columnarSnapshot).getJSONObject("products").getJSONArray("productId").length());
+
+        int jsonBytes = jsonSnapshot.getBytes(StandardCharsets.UTF_8).length;
+        int columnarBytes = columnarSnapshot.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(columnarBytes < jsonBytes * 0.7);
+        // Repetitive rows compress to a small fraction either way; columnar still ends up smaller
+        assertTrue(deflatedSize(jsonSnapshot) < jsonBytes / 4);
+        assertTrue(deflatedSize(columnarSnapshot) < deflatedSize(jsonSnapshot));
+
+        json.session().close();
+        columnar.session().close();
+    }
+
+    private Client connect(String subprotocol) throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(16 << 20);
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        if (subprotocol != null) {
+            headers.setSecWebSocketProtocol(subprotocol);
+        }
+        headers.setSecWebSocketExtensions(List.of(new WebSocketExtension("permessage-deflate")));
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        WebSocketSession session = new StandardWebSocketClient(container).execute(new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(@NonNull WebSocketSession session, @NonNull TextMessage message) {
+                received.add(message.getPayload());
+            }
+        }, headers, URI.create("ws://localhost:" + port + "/inventory-socket")).get(10, TimeUnit.SECONDS);
+        return new Client(session, received);
+    }
+
+    // Size of a message on the wire with permessage-deflate, which is raw DEFLATE
+    private static int deflatedSize(String message) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(message.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        byte[] buffer = new byte[1 << 16];
+        int size = 0;
+        while (!deflater.finished()) {
+            size += deflater.deflate(buffer);
+        }
+        deflater.end();
+        return size;
+    }
+
+    private record Client(WebSocketSession session, BlockingQueue<String> received) {
+
+        String next() throws InterruptedException {
+            String message = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+            return message;
+        }
+    }
+}
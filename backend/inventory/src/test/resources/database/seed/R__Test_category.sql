@@ -0,0 +1,4 @@
+-- Category 1, which test products are created in unless a test needs a category of its own.
+-- Tests only: src/test/resources/application.properties adds this location to Flyway's.
+INSERT INTO product_category (category_id, category_name) VALUES (1, 'Test')
+ON CONFLICT (category_id) DO NOTHING;
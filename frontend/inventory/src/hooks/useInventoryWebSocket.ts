@@ -16,17 +16,41 @@ interface Category {
 interface ProductUpdate {
   type: "productUpdate";
   timestamp: number;
-  updateType: "global" | "single";
+  seq: number;
+  epoch: number;
+  updateType: "global" | "single" | "batch";
   products: Product[];
   updatedProduct: Product;
+  updatedProducts: Product[];
+  deletedProductIds: number[];
 }
 
 interface CategoryUpdate {
   type: "categoryUpdate";
   timestamp: number;
-  updateType: "global" | "single";
+  seq: number;
+  epoch: number;
+  updateType: "global" | "single" | "batch";
   categories: Category[];
   updatedCategory: Category;
+  updatedCategories: Category[];
+  deletedCategoryIds: number[];
+}
+
+interface ProductDeleted {
+  type: "productDeleted";
+  timestamp: number;
+  seq: number;
+  epoch: number;
+  productId: number;
+}
+
+interface CategoryDeleted {
+  type: "categoryDeleted";
+  timestamp: number;
+  seq: number;
+  epoch: number;
+  categoryId: number;
 }
 
 interface State {
@@ -42,8 +66,10 @@ type Action =
   | { type: "ERROR"; message: string }
   | { type: "PRODUCTS_REFRESHED"; products: Product[] }
   | { type: "PRODUCT_UPDATED"; product: Product }
+  | { type: "PRODUCTS_BATCH_UPDATED"; products: Product[]; deletedIds: number[] }
   | { type: "CATEGORIES_REFRESHED"; categories: Category[] }
-  | { type: "CATEGORY_UPDATED"; category: Category };
+  | { type: "CATEGORY_UPDATED"; category: Category }
+  | { type: "CATEGORIES_BATCH_UPDATED"; categories: Category[]; deletedIds: number[] };
 
 const HEARTBEAT_INTERVAL = 10000; // 10s
 const RECONNECT_BASE_DELAY = 1000;
@@ -98,6 +124,20 @@ function reducer(state: State, action: Action) {
         };
       }
 
+    case "PRODUCTS_BATCH_UPDATED": {
+      const updatedById = new Map(action.products.map((p) => [p.productId, p]));
+      const kept = state.products
+        .filter((p) => !action.deletedIds.includes(p.productId))
+        .map((p) => updatedById.get(p.productId) ?? p);
+      const added = action.products.filter(
+        (p) => !state.products.some((current) => current.productId === p.productId)
+      );
+      return {
+        ...state,
+        products: [...kept, ...added],
+      };
+    }
+
     case "CATEGORIES_REFRESHED":
       return {
         ...state,
@@ -124,6 +164,20 @@ function reducer(state: State, action: Action) {
         };
       }
 
+    case "CATEGORIES_BATCH_UPDATED": {
+      const updatedById = new Map(action.categories.map((c) => [c.categoryId, c]));
+      const kept = state.categories
+        .filter((c) => !action.deletedIds.includes(c.categoryId))
+        .map((c) => updatedById.get(c.categoryId) ?? c);
+      const added = action.categories.filter(
+        (c) => !state.categories.some((current) => current.categoryId === c.categoryId)
+      );
+      return {
+        ...state,
+        categories: [...kept, ...added],
+      };
+    }
+
     default:
       return state;
   }
@@ -140,6 +194,10 @@ const initialState: State = {
 // if so, check if the updateType is global or single
 // for global, replace the entire products list or categories list
 // for single, update only the specific product or category in the list
+// for batch, update the listed ones and remove the deleted ids
+// productDeleted / categoryDeleted only carry the id to remove
+// every update carries a seq, so a reconnect only asks for what came after the last one seen
+// resync means the server dropped updates we were too slow to take; subscribe again from the last seq
 
 export const useInventoryWebSocket = (wsUrl: string) => {
   const [state, dispatch] = useReducer(reducer, initialState);
@@ -148,9 +206,34 @@ export const useInventoryWebSocket = (wsUrl: string) => {
   const reconnectTimeoutRef = useRef<number | null>(null);
   const reconnectAttemptsRef = useRef(0);
   const shouldReconnectRef = useRef(true);
+  const lastSeqRef = useRef<number | null>(null);
+  const epochRef = useRef<number | null>(null);
+
+  const buildUrl = () => {
+    if (lastSeqRef.current === null || epochRef.current === null) {
+      return wsUrl;
+    }
+    const url = new URL(wsUrl, window.location.href);
+    url.searchParams.set("sinceSeq", String(lastSeqRef.current));
+    url.searchParams.set("epoch", String(epochRef.current));
+    return url.toString();
+  };
+
+  const trackSeq = (update: { seq?: number; epoch?: number }) => {
+    if (update.seq === undefined || update.epoch === undefined) {
+      return;
+    }
+    if (epochRef.current !== update.epoch) {
+      // the server restarted, its sequence started over
+      epochRef.current = update.epoch;
+      lastSeqRef.current = update.seq;
+    } else {
+      lastSeqRef.current = Math.max(lastSeqRef.current ?? 0, update.seq);
+    }
+  };
 
   const connect = () => {
-    wsRef.current = new WebSocket(wsUrl);
+    wsRef.current = new WebSocket(buildUrl());
 
     wsRef.current.onopen = () => {
       reconnectAttemptsRef.current = 0;
@@ -165,8 +248,19 @@ export const useInventoryWebSocket = (wsUrl: string) => {
         return; // expected heartbeat response from server
       }
 
+      if (data.type === "resync") {
+        const subscribe: { action: string; sinceSeq?: number; epoch?: number } = { action: "subscribe" };
+        if (lastSeqRef.current !== null && epochRef.current !== null) {
+          subscribe.sinceSeq = lastSeqRef.current;
+          subscribe.epoch = epochRef.current;
+        }
+        wsRef.current?.send(JSON.stringify(subscribe));
+        return;
+      }
+
       if (data.type === "productUpdate") {
         const update = data as ProductUpdate;
+        trackSeq(update);
 
         if (update.updateType === "global") {
           dispatch({ type: "PRODUCTS_REFRESHED", products: update.products });
@@ -175,11 +269,38 @@ export const useInventoryWebSocket = (wsUrl: string) => {
             type: "PRODUCT_UPDATED",
             product: update.updatedProduct,
           });
+        } else if (update.updateType === "batch") {
+          dispatch({
+            type: "PRODUCTS_BATCH_UPDATED",
+            products: update.updatedProducts ?? [],
+            deletedIds: update.deletedProductIds ?? [],
+          });
         }
       }
 
+      if (data.type === "productDeleted") {
+        const deleted = data as ProductDeleted;
+        trackSeq(deleted);
+        dispatch({
+          type: "PRODUCTS_BATCH_UPDATED",
+          products: [],
+          deletedIds: [deleted.productId],
+        });
+      }
+
+      if (data.type === "categoryDeleted") {
+        const deleted = data as CategoryDeleted;
+        trackSeq(deleted);
+        dispatch({
+          type: "CATEGORIES_BATCH_UPDATED",
+          categories: [],
+          deletedIds: [deleted.categoryId],
+        });
+      }
+
       if (data.type === "categoryUpdate") {
         const update = data as CategoryUpdate;
+        trackSeq(update);
 
         if (update.updateType === "global") {
           dispatch({
@@ -191,6 +312,12 @@ export const useInventoryWebSocket = (wsUrl: string) => {
             type: "CATEGORY_UPDATED",
             category: update.updatedCategory,
           });
+        } else if (update.updateType === "batch") {
+          dispatch({
+            type: "CATEGORIES_BATCH_UPDATED",
+            categories: update.updatedCategories ?? [],
+            deletedIds: update.deletedCategoryIds ?? [],
+          });
         }
       }
     };
@@ -37,8 +37,21 @@ export const OrderProductApi = {
   addToOrder: ({ orderId, productId, quantity = 1 }) => request(`${API_BASE}/OrderProduct/addProductToOrder?orderId=${orderId}&productId=${productId}&quantity=${quantity}`, { method: 'POST' })
 }
 
+// The inventory API returns products a page at a time; follow nextCursor until the last page
+async function listAllProducts() {
+  const products = []
+  let cursor = null
+  do {
+    const query = `limit=1000${cursor ? `&cursor=${encodeURIComponent(cursor)}` : ''}`
+    const page = await request(`${PRODUCT_API}?${query}`)
+    products.push(...page.items)
+    cursor = page.nextCursor
+  } while (cursor)
+  return products
+}
+
 export const ProductApi = {
-  list: () => request(PRODUCT_API),
+  list: listAllProducts,
   get: (id) => request(`${PRODUCT_API}/${id}`),
   update: (id, product) => request(`${PRODUCT_API}/${id}`, {
     method: 'PUT',